@@ -0,0 +1,63 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+
+/**
+ * Paying a labourer for {@code jobs} completed jobs: one aggregated payout against one
+ * payout per payment. Settlement and outbox rows grow with the payout count, which this
+ * does not include.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AggregatedPayoutBenchmark {
+
+    private static final String BANK_ACCOUNT_REF = "HDFC0001234:50100012345678";
+
+    @Param({"40"})
+    public int jobs;
+
+    private ServiceFixture fixture;
+    private UUID labourId;
+    private UUID[] paymentIds;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture();
+        paymentIds = new UUID[jobs];
+    }
+
+    @Setup(Level.Invocation)
+    public void seedPayments() {
+        fixture.reset();
+        labourId = UUID.randomUUID();
+        for (int i = 0; i < jobs; i++) {
+            paymentIds[i] = fixture.seedPayment(i, "SUCCESS", labourId).getId();
+        }
+    }
+
+    @Benchmark
+    public Object aggregated() {
+        return fixture.payoutService.initiateAggregatedPayout(labourId, BANK_ACCOUNT_REF).block();
+    }
+
+    @Benchmark
+    public int perPayment() {
+        for (UUID paymentId : paymentIds) {
+            fixture.payoutService.initiatePayoutToLabour(paymentId, labourId, BANK_ACCOUNT_REF).block();
+        }
+        return paymentIds.length;
+    }
+}
@@ -0,0 +1,75 @@
+package com.payment.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every benchmark twice, once for throughput (ops/s) and once in sample mode
+ * (latency percentiles, including p99), both with the GC profiler attached for the
+ * allocation rate. The combined results are written as JSON so they can be diffed
+ * between releases.
+ *
+ * <pre>
+ * mvn -f benchmarks/pom.xml package
+ * java -jar benchmarks/target/benchmarks.jar [jmh options] [-rff results.json]
+ * </pre>
+ *
+ * Standard JMH command line options (include patterns, -f, -wi, -i, -t ...) are honoured.
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT_FILE = "benchmarks/target/jmh-results.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String resultFile = commandLine.getResult().orElse(DEFAULT_RESULT_FILE);
+
+        List<RunResult> results = new ArrayList<>();
+        results.addAll(run(commandLine, Mode.Throughput, TimeUnit.SECONDS));
+        results.addAll(run(commandLine, Mode.SampleTime, TimeUnit.MICROSECONDS));
+
+        File output = new File(resultFile);
+        if (output.getParentFile() != null) {
+            output.getParentFile().mkdirs();
+        }
+        try (PrintStream out = new PrintStream(output)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        } catch (Exception e) {
+            throw new RunnerException("Could not write " + resultFile, e);
+        }
+        System.out.println("Benchmark results written to " + output.getAbsolutePath());
+    }
+
+    private static Collection<RunResult> run(CommandLineOptions commandLine, Mode mode, TimeUnit unit) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .mode(mode)
+                .timeUnit(unit)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(System.getProperty("java.io.tmpdir"), "jmh-" + mode.shortLabel() + ".json").getPath());
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackageName() + ".*");
+        }
+        return new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,58 @@
+package com.payment.benchmarks;
+
+import com.payment.money.CommissionRule;
+import com.payment.money.Money;
+import com.payment.money.PercentageCommissionRule;
+import com.payment.money.SlabCommissionRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Commission and payout for one payment, as {@link Money} rules against the
+ * {@code BigDecimal} arithmetic they replaced. Run with {@code -prof gc} to compare
+ * allocation per payment.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CommissionBenchmark {
+
+    private static final BigDecimal RATE = BigDecimal.valueOf(0.1);
+
+    private final CommissionRule percentage = new PercentageCommissionRule(1000);
+    private final CommissionRule slabs = SlabCommissionRule.parse("50000:10,200000:8,*:5");
+    private Money amount;
+    private BigDecimal decimalAmount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        amount = Money.parse("1499.05");
+        decimalAmount = new BigDecimal("1499.05");
+    }
+
+    @Benchmark
+    public Money percentageRule() {
+        return amount.minus(percentage.commissionOn(amount));
+    }
+
+    @Benchmark
+    public Money slabRule() {
+        return amount.minus(slabs.commissionOn(amount));
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal commission = decimalAmount.multiply(RATE).setScale(2, RoundingMode.HALF_UP);
+        return decimalAmount.subtract(commission);
+    }
+}
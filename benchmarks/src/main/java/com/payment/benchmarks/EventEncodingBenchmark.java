@@ -0,0 +1,72 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import com.payment.event.EventEncoding;
+import com.payment.event.NotificationEvent;
+import com.payment.event.PaymentEvent;
+import com.payment.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cost of encoding one payment event and its notification, per encoding. Allocation per
+ * event is the GC profiler's {@code gc.alloc.rate.norm}; payload sizes are printed at setup.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventEncodingBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    public EventEncoding encoding;
+
+    private ServiceFixture fixture;
+    private PaymentEvent paymentEvent;
+    private NotificationEvent notification;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture();
+        Instant now = Instant.now();
+        paymentEvent = PaymentEvent.builder()
+                .paymentId(UUID.randomUUID())
+                .jobId(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .status("SUCCESS")
+                .amount(Money.parse("1250.00"))
+                .timestamp(now)
+                .build();
+        notification = NotificationEvent.builder()
+                .userName("Payment Service")
+                .username(paymentEvent.getUserId().toString())
+                .subject("Payment Successful")
+                .source("WHATSAPP")
+                .message("Your payment of INR 1250.00 for Job #" + paymentEvent.getJobId() + " is successful.")
+                .metadata(Map.of("type", "payment", "timestamp", now.toString()))
+                .build();
+        System.out.printf("%n%s payload bytes: payment event %d, notification %d%n", encoding,
+                encodePaymentEvent().length, encodeNotification().length);
+    }
+
+    @Benchmark
+    public byte[] encodePaymentEvent() {
+        return fixture.eventEncoder.encode(encoding, paymentEvent);
+    }
+
+    @Benchmark
+    public byte[] encodeNotification() {
+        return fixture.eventEncoder.encode(encoding, notification);
+    }
+}
@@ -0,0 +1,139 @@
+package com.payment.benchmarks;
+
+import com.payment.service.JobServiceClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Job lookups against a local stub job service that answers in about a millisecond, but
+ * stalls for {@code slowMillis} on {@code slowPercent} of requests. {@code lookupMiss} asks
+ * about a new job every call and shows what hedging does to the tail; {@code lookupHit}
+ * repeats a job that is already cached; {@code lookupBurst} asks about {@value #BURST}
+ * new jobs at once, the way a bulk payout run does, one request each or batched.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JobServiceClientBenchmark {
+
+    private static final int BURST = 256;
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    @Param({"0", "20"})
+    public int hedgeMillis;
+
+    @Param({"5"})
+    public int slowPercent;
+
+    @Param({"200"})
+    public int slowMillis;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    private HttpServer server;
+    private JobServiceClient client;
+    private UUID cachedJob;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/jobs/", exchange -> {
+            stall();
+            if ("POST".equals(exchange.getRequestMethod())) {
+                // Bulk lookup, every id in the request array is valid
+                String ids = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                StringBuilder answer = new StringBuilder("{");
+                Matcher matcher = UUID_PATTERN.matcher(ids);
+                while (matcher.find()) {
+                    answer.append(answer.length() > 1 ? "," : "").append('"').append(matcher.group()).append("\":true");
+                }
+                respond(exchange, answer.append('}').toString());
+            } else {
+                respond(exchange, "true");
+            }
+        });
+        server.start();
+
+        // Timeout above the slow tail so unhedged calls wait it out instead of failing
+        client = new JobServiceClient(WebClient.create(), new SimpleMeterRegistry(),
+                "http://127.0.0.1:" + server.getAddress().getPort(),
+                Duration.ofMillis(slowMillis * 2L), Duration.ofMillis(hedgeMillis), 1, 50f, Duration.ofSeconds(10),
+                100_000, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofHours(24), Duration.ofSeconds(10),
+                batched, 100, Duration.ofMillis(5));
+        cachedJob = UUID.randomUUID();
+        client.validateJob(cachedJob).block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public Boolean lookupMiss() {
+        return client.validateJob(UUID.randomUUID()).block();
+    }
+
+    @Benchmark
+    public Boolean lookupHit() {
+        return client.validateJob(cachedJob).block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Long lookupBurst() {
+        return Flux.range(0, BURST)
+                .flatMap(i -> client.validateJob(UUID.randomUUID()), BURST)
+                .filter(Boolean::booleanValue)
+                .count()
+                .block();
+    }
+
+    private void stall() {
+        try {
+            if (ThreadLocalRandom.current().nextInt(100) < slowPercent) {
+                Thread.sleep(slowMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.payment.benchmarks;
+
+import com.payment.service.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Per-request cost of bearer token authentication: {@code cachedToken} is a client reusing
+ * its token, served from the verified-claims cache; {@code uncachedToken} runs with a zero
+ * cache TTL, so every call pays for the HMAC check and parsing.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtAuthenticationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-0123456789";
+
+    private JwtService cached;
+    private JwtService uncached;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cached = new JwtService(SECRET, 100_000, Duration.ofMinutes(10));
+        uncached = new JwtService(SECRET, 100_000, Duration.ZERO);
+        token = token();
+    }
+
+    @Benchmark
+    public Optional<?> cachedToken() {
+        return cached.authenticate(token);
+    }
+
+    @Benchmark
+    public Optional<?> uncachedToken() {
+        return uncached.authenticate(token);
+    }
+
+    private static String token() {
+        return "Bearer " + Jwts.builder()
+                .subject(UUID.randomUUID().toString())
+                .expiration(new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis()))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+}
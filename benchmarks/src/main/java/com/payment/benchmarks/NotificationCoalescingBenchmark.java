@@ -0,0 +1,80 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import com.payment.entity.Payout;
+import com.payment.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Per-event cost of a settlement burst: payout events for {@code payoutsPerLabourer} payouts
+ * each, then one flush. A zero window writes every notification to the outbox directly.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NotificationCoalescingBenchmark {
+
+    private static final int PAYOUTS = 200;
+
+    @Param({"0", "60"})
+    public int windowSeconds;
+
+    @Param({"1", "20"})
+    public int payoutsPerLabourer;
+
+    private ServiceFixture fixture;
+    private Payout[] payouts;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture(Set.of(), Duration.ofSeconds(windowSeconds));
+        payouts = new Payout[PAYOUTS];
+        UUID labourId = null;
+        for (int i = 0; i < PAYOUTS; i++) {
+            if (i % payoutsPerLabourer == 0) {
+                labourId = UUID.randomUUID();
+            }
+            payouts[i] = Payout.builder()
+                    .id(UUID.randomUUID())
+                    .jobId(UUID.randomUUID())
+                    .paymentId(UUID.randomUUID())
+                    .labourId(labourId)
+                    .amount(Money.parse("900.00"))
+                    .commission(Money.parse("100.00"))
+                    .settlementStatus("PROCESSED")
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clearOutbox() {
+        fixture.outbox.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAYOUTS)
+    public int settlementBurst() {
+        for (Payout payout : payouts) {
+            fixture.kafkaEventProducer.publishPayoutSuccessEvent(payout).block();
+        }
+        fixture.notificationCoalescer.flushAll().block();
+        return fixture.outbox.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import com.payment.entity.Payment;
+import com.payment.event.EventEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Per-event cost of relaying a full outbox batch: send, acknowledgement and bulk delete.
+ * Events are encoded when enqueued, so the relay cost barely depends on the encoding.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OutboxRelayBenchmark {
+
+    // Two events per payment, one relay batch
+    private static final int PAYMENTS = 250;
+    private static final int EVENTS = PAYMENTS * 2;
+
+    @Param({"JSON", "BINARY"})
+    public EventEncoding encoding;
+
+    private ServiceFixture fixture;
+    private Payment[] payments;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture(encoding == EventEncoding.BINARY
+                ? Set.of("payment-events", "payout-events", "notifications")
+                : Set.of(), Duration.ZERO);
+        payments = new Payment[PAYMENTS];
+        for (int i = 0; i < PAYMENTS; i++) {
+            payments[i] = fixture.seedPayment(i, "SUCCESS");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void enqueueBatch() {
+        for (Payment payment : payments) {
+            fixture.kafkaEventProducer.publishPaymentSuccessEvent(payment).block();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Integer relayBatch() {
+        return fixture.outboxRelay.relayBatch().block();
+    }
+}
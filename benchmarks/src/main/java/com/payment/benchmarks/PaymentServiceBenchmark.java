@@ -0,0 +1,122 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import com.payment.dto.BatchPaymentResult;
+import com.payment.dto.PaymentRequest;
+import com.payment.dto.PaymentResponse;
+import com.payment.entity.Payment;
+import com.payment.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Per-request cost of the {@code PaymentService} pipelines, excluding network I/O.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PaymentServiceBenchmark {
+
+    private static final int SEEDED_PAYMENTS = 1024;
+    private static final int BATCH_SIZE = 100;
+
+    private ServiceFixture fixture;
+    private PaymentRequest request;
+    private List<PaymentRequest> batch;
+    private UUID[] paymentIds;
+    private String[] providerOrderIds;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture();
+        request = PaymentRequest.builder()
+                .jobId(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .labourId(UUID.randomUUID())
+                .amount(Money.parse("1499.00"))
+                .paymentMethod("UPI")
+                .paymentProvider("STRIPE")
+                .build();
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(request);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        fixture.reset();
+        paymentIds = new UUID[SEEDED_PAYMENTS];
+        providerOrderIds = new String[SEEDED_PAYMENTS];
+        for (int i = 0; i < SEEDED_PAYMENTS; i++) {
+            Payment payment = fixture.seedPayment(i, "PENDING");
+            paymentIds[i] = payment.getId();
+            providerOrderIds[i] = payment.getProviderOrderId();
+            fixture.redisTemplate.store().put(payment.getId().toString(), payment.getStatus());
+        }
+    }
+
+    @Benchmark
+    public PaymentResponse initiatePayment() {
+        return fixture.paymentService.initiatePayment(request, null, null).block();
+    }
+
+    @Benchmark
+    public PaymentResponse initiatePaymentWithIdempotencyKey() {
+        return fixture.paymentService.initiatePayment(request, null, "bench-" + sequence++).block();
+    }
+
+    @Benchmark
+    public PaymentResponse initiatePaymentReplay() {
+        return fixture.paymentService.initiatePayment(request, null, "bench-replay").block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BatchPaymentResult> initiatePaymentBatch() {
+        return fixture.paymentService.initiatePaymentBatch(Flux.fromIterable(batch), null).collectList().block();
+    }
+
+    @Benchmark
+    public Object verifyPayment() {
+        int i = (int) (sequence++ % SEEDED_PAYMENTS);
+        // Reopen the payment so every call measures a status transition, not the unchanged no-op
+        fixture.payments.rows().get(paymentIds[i]).setStatus("PENDING");
+        return fixture.paymentService.verifyPayment(providerOrderIds[i], "txn_bench").block();
+    }
+
+    @Benchmark
+    public String getPaymentStatusLocalHit() {
+        return fixture.paymentService.getPaymentStatus(paymentIds[(int) (sequence++ % SEEDED_PAYMENTS)]).block();
+    }
+
+    @Benchmark
+    public String getPaymentStatusRedisHit() {
+        UUID paymentId = paymentIds[(int) (sequence++ % SEEDED_PAYMENTS)];
+        fixture.paymentStatusCache.evictLocal(paymentId);
+        return fixture.paymentService.getPaymentStatus(paymentId).block();
+    }
+
+    @Benchmark
+    public String getPaymentStatusMiss() {
+        UUID paymentId = paymentIds[(int) (sequence++ % SEEDED_PAYMENTS)];
+        fixture.paymentStatusCache.evictLocal(paymentId);
+        fixture.redisTemplate.store().remove(paymentId.toString());
+        return fixture.paymentService.getPaymentStatus(paymentId).block();
+    }
+}
@@ -0,0 +1,51 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+
+/**
+ * Per-request cost of {@code PayoutService.initiatePayoutToLabour}, excluding network I/O.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PayoutServiceBenchmark {
+
+    private static final int SEEDED_PAYMENTS = 1024;
+
+    private ServiceFixture fixture;
+    private UUID[] paymentIds;
+    private UUID labourId;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture();
+        labourId = UUID.randomUUID();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        fixture.reset();
+        paymentIds = new UUID[SEEDED_PAYMENTS];
+        for (int i = 0; i < SEEDED_PAYMENTS; i++) {
+            paymentIds[i] = fixture.seedPayment(i, "SUCCESS").getId();
+        }
+    }
+
+    @Benchmark
+    public Object initiatePayoutToLabour() {
+        UUID paymentId = paymentIds[(int) (sequence++ % SEEDED_PAYMENTS)];
+        return fixture.payoutService.initiatePayoutToLabour(paymentId, labourId, "HDFC0001234:50100012345678").block();
+    }
+}
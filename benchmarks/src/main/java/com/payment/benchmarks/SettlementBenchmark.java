@@ -0,0 +1,76 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import com.payment.entity.Payout;
+import com.payment.money.Money;
+import com.payment.repository.PayoutRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One settlement run over {@code payouts} pending payouts spread across eight banks:
+ * claiming, bank files, status updates and outbox events. Files go to a temporary
+ * directory on the local disk.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SettlementBenchmark {
+
+    private static final String[] BANKS = {"HDFC", "ICIC", "SBIN", "UTIB", "KKBK", "PUNB", "BARB", "CNRB"};
+
+    @Param({"100000"})
+    public int payouts;
+
+    private ServiceFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture();
+    }
+
+    @Setup(Level.Iteration)
+    public void seedPendingPayouts() {
+        fixture.reset();
+        LocalDateTime now = LocalDateTime.now();
+        List<Payout> pending = new ArrayList<>(payouts);
+        for (int i = 0; i < payouts; i++) {
+            pending.add(Payout.builder()
+                    .jobId(UUID.randomUUID())
+                    .paymentId(UUID.randomUUID())
+                    .labourId(UUID.randomUUID())
+                    .amount(Money.parse("1349.10"))
+                    .commission(Money.parse("149.90"))
+                    .settlementStatus("PENDING")
+                    .bankAccountRef(BANKS[i % BANKS.length] + "0001234:5010001234" + (i % 10_000))
+                    .createdAt(now.plusNanos(i * 1000L))
+                    .updatedAt(now)
+                    .build());
+        }
+        fixture.payouts.as(PayoutRepository.class).saveAll(pending).blockLast();
+    }
+
+    @Benchmark
+    public void settle() {
+        fixture.settlementEngine.settle().block();
+    }
+}
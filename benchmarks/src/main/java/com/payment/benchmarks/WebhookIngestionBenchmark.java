@@ -0,0 +1,81 @@
+package com.payment.benchmarks;
+
+import com.payment.benchmarks.support.ServiceFixture;
+import com.payment.service.HmacSigner;
+import com.payment.service.WebhookIngestionService.Outcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * Per-webhook cost of acknowledging a signed Stripe event: signature check, parsing,
+ * dedupe and handing it to the verification workers, which run in the background.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WebhookIngestionBenchmark {
+
+    private static final int EVENTS = 1024;
+    private static final int SEEDED_PAYMENTS = 256;
+
+    private ServiceFixture fixture;
+    private HmacSigner signer;
+    private String[] signatures;
+    private byte[][] bodies;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = new ServiceFixture();
+        signer = new HmacSigner(ServiceFixture.STRIPE_WEBHOOK_SECRET);
+        for (int i = 0; i < SEEDED_PAYMENTS; i++) {
+            fixture.seedPayment(i, "PENDING");
+        }
+        signatures = new String[EVENTS];
+        bodies = new byte[EVENTS][];
+    }
+
+    @Setup(Level.Invocation)
+    public void signEvents() {
+        // Fresh event ids every invocation so each webhook takes the accepting path
+        fixture.redisTemplate.clear();
+        String timestamp = Long.toString(System.currentTimeMillis() / 1000);
+        for (int i = 0; i < EVENTS; i++) {
+            long event = sequence++;
+            bodies[i] = ("{\"id\":\"evt_" + event + "\",\"type\":\"checkout.session.completed\",\"data\":{\"object\":"
+                    + "{\"id\":\"cs_" + event + "\",\"client_reference_id\":\"stripe_ord_seed_" + (event % SEEDED_PAYMENTS)
+                    + "\",\"payment_intent\":\"pi_" + event + "\"}}}").getBytes(StandardCharsets.UTF_8);
+            byte[] signature = signer.sign(timestamp.getBytes(StandardCharsets.US_ASCII), new byte[]{'.'}, bodies[i]);
+            signatures[i] = "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.webhookIngestionService.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int ingestStripe() {
+        int accepted = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            if (fixture.webhookIngestionService.ingestStripe(signatures[i], bodies[i]).block() == Outcome.ACCEPTED) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
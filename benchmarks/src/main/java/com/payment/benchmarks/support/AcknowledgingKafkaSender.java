@@ -0,0 +1,78 @@
+package com.payment.benchmarks.support;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaOutbound;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+import reactor.kafka.sender.TransactionManager;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link KafkaSender} that acknowledges every pre-encoded record immediately, so the measured
+ * cost is the relay's own work and no broker. Records and payload bytes are counted.
+ */
+public class AcknowledgingKafkaSender implements KafkaSender<String, byte[]> {
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    @Override
+    public <T> Flux<SenderResult<T>> send(Publisher<? extends SenderRecord<String, byte[], T>> outbound) {
+        return Flux.from(outbound).map(record -> {
+            records.increment();
+            bytes.add(record.value().length);
+            RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), 0), 0, 0, 0,
+                    record.key() != null ? record.key().length() : -1, record.value().length);
+            return new Acknowledged<>(metadata, record.correlationMetadata());
+        });
+    }
+
+    @Override
+    public <T> Flux<Flux<SenderResult<T>>> sendTransactionally(
+            Publisher<? extends Publisher<? extends SenderRecord<String, byte[], T>>> records) {
+        throw new UnsupportedOperationException("sendTransactionally");
+    }
+
+    @Override
+    public TransactionManager transactionManager() {
+        throw new UnsupportedOperationException("transactionManager");
+    }
+
+    @Override
+    public KafkaOutbound<String, byte[]> createOutbound() {
+        throw new UnsupportedOperationException("createOutbound");
+    }
+
+    @Override
+    public <T> Mono<T> doOnProducer(Function<Producer<String, byte[]>, ? extends T> function) {
+        throw new UnsupportedOperationException("doOnProducer");
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public long records() {
+        return records.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    private record Acknowledged<T>(RecordMetadata recordMetadata, T correlationMetadata) implements SenderResult<T> {
+
+        @Override
+        public Exception exception() {
+            return null;
+        }
+    }
+}
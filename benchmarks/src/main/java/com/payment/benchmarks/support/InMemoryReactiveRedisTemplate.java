@@ -0,0 +1,122 @@
+package com.payment.benchmarks.support;
+
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ReactiveRedisTemplate} backed by a {@link ConcurrentHashMap}.
+ * Expiry is ignored; benchmarks clear the store between iterations instead.
+ */
+public class InMemoryReactiveRedisTemplate extends ReactiveRedisTemplate<String, String> {
+
+    private final Map<String, String> store = new ConcurrentHashMap<>();
+    private final Map<String, BitSet> bitmaps = new ConcurrentHashMap<>();
+    private final ReactiveValueOperations<String, String> valueOperations;
+
+    public InMemoryReactiveRedisTemplate() {
+        super(unusedConnectionFactory(), RedisSerializationContext.string());
+        this.valueOperations = valueOperations();
+    }
+
+    public void clear() {
+        store.clear();
+        bitmaps.clear();
+    }
+
+    public Map<String, String> store() {
+        return store;
+    }
+
+    @Override
+    public ReactiveValueOperations<String, String> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    public Mono<Boolean> hasKey(String key) {
+        return Mono.fromCallable(() -> store.containsKey(key));
+    }
+
+    @Override
+    public Mono<Boolean> expire(String key, Duration timeout) {
+        return Mono.fromCallable(() -> store.containsKey(key) || bitmaps.containsKey(key));
+    }
+
+    @Override
+    public Mono<Long> convertAndSend(String destination, String message) {
+        return Mono.just(0L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReactiveValueOperations<String, String> valueOperations() {
+        return (ReactiveValueOperations<String, String>) Proxy.newProxyInstance(
+                ReactiveValueOperations.class.getClassLoader(),
+                new Class<?>[]{ReactiveValueOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "set" -> Mono.fromCallable(() -> {
+                        store.put((String) args[0], (String) args[1]);
+                        return true;
+                    });
+                    case "setIfAbsent" -> Mono.fromCallable(() -> store.putIfAbsent((String) args[0], (String) args[1]) == null);
+                    case "get" -> Mono.fromCallable(() -> store.get((String) args[0]));
+                    case "getAndDelete" -> Mono.fromCallable(() -> store.remove((String) args[0]));
+                    case "delete" -> Mono.fromCallable(() -> store.remove((String) args[0]) != null);
+                    case "multiGet" -> Mono.fromCallable(() -> {
+                        List<String> values = new ArrayList<>();
+                        for (Object key : (Collection<?>) args[0]) {
+                            values.add(store.get((String) key));
+                        }
+                        return values;
+                    });
+                    case "bitField" -> Mono.fromCallable(() -> bitField((String) args[0], (BitFieldSubCommands) args[1]));
+                    case "toString" -> "InMemoryValueOperations";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.toGenericString());
+                });
+    }
+
+    // SET of u1 and GET of i64 only, the subcommands the idempotency key filter sends
+    private List<Long> bitField(String key, BitFieldSubCommands commands) {
+        BitSet bitmap = bitmaps.computeIfAbsent(key, k -> new BitSet());
+        List<Long> results = new ArrayList<>();
+        synchronized (bitmap) {
+            for (BitFieldSubCommands.BitFieldSubCommand command : commands) {
+                long offset = command.getOffset().getValue() * (command.getOffset().isZeroBased() ? 1 : command.getType().getBits());
+                if (command instanceof BitFieldSubCommands.BitFieldSet set) {
+                    results.add(bitmap.get((int) offset) ? 1L : 0L);
+                    bitmap.set((int) offset, set.getValue() != 0);
+                } else {
+                    long value = 0;
+                    for (int bit = 0; bit < command.getType().getBits(); bit++) {
+                        value = value << 1 | (bitmap.get((int) offset + bit) ? 1 : 0);
+                    }
+                    results.add(value);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static ReactiveRedisConnectionFactory unusedConnectionFactory() {
+        return (ReactiveRedisConnectionFactory) Proxy.newProxyInstance(
+                ReactiveRedisConnectionFactory.class.getClassLoader(),
+                new Class<?>[]{ReactiveRedisConnectionFactory.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException("In-memory template has no Redis connection");
+                });
+    }
+}
@@ -0,0 +1,147 @@
+package com.payment.benchmarks.support;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Map-backed stand-in for an R2DBC repository interface.
+ * Only the methods the services call are implemented; derived finders are
+ * registered as secondary indexes so lookups stay O(1) like an indexed query.
+ * Default methods run as declared, so they reach the handlers of the methods they call.
+ */
+public final class InMemoryRepository<T, ID> implements InvocationHandler {
+
+    private final Map<ID, T> rows = new ConcurrentHashMap<>();
+    private final Map<String, Index<T>> indexes = new HashMap<>();
+    private final Map<String, Function<Object[], Object>> queries = new HashMap<>();
+    private final Function<T, ID> idGetter;
+    private final BiConsumer<T, ID> idSetter;
+    private final Supplier<ID> idGenerator;
+
+    public InMemoryRepository(Function<T, ID> idGetter, BiConsumer<T, ID> idSetter, Supplier<ID> idGenerator) {
+        this.idGetter = idGetter;
+        this.idSetter = idSetter;
+        this.idGenerator = idGenerator;
+    }
+
+    public static <T> InMemoryRepository<T, UUID> withUuidIds(Function<T, UUID> idGetter, BiConsumer<T, UUID> idSetter) {
+        return new InMemoryRepository<>(idGetter, idSetter, UUID::randomUUID);
+    }
+
+    public InMemoryRepository<T, ID> index(String finderName, Function<T, Object> keyExtractor) {
+        indexes.put(finderName, new Index<>(keyExtractor));
+        return this;
+    }
+
+    /**
+     * Answers a {@code @Query} method with {@code handler}, which receives the call arguments.
+     */
+    public InMemoryRepository<T, ID> query(String methodName, Function<Object[], Object> handler) {
+        queries.put(methodName, handler);
+        return this;
+    }
+
+    public <R> R as(Class<R> repositoryType) {
+        return repositoryType.cast(Proxy.newProxyInstance(
+                repositoryType.getClassLoader(), new Class<?>[]{repositoryType}, this));
+    }
+
+    public void clear() {
+        rows.clear();
+        indexes.values().forEach(index -> index.entries.clear());
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public Map<ID, T> rows() {
+        return rows;
+    }
+
+    /**
+     * Reads a secondary index directly, for {@code @Query} handlers that project an indexed row.
+     */
+    public T lookup(String finderName, Object key) {
+        return indexes.get(finderName).entries.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.isDefault()) {
+            return InvocationHandler.invokeDefault(proxy, method, args);
+        }
+        String name = method.getName();
+        return switch (name) {
+            case "save" -> Mono.fromCallable(() -> store((T) args[0]));
+            case "saveAll" -> (args[0] instanceof Iterable<?> entities
+                    ? Flux.fromIterable((Iterable<T>) entities)
+                    : Flux.from((org.reactivestreams.Publisher<T>) args[0])).map(this::store);
+            case "insertAll" -> {
+                Flux<T> stored = Flux.defer(() -> Flux.fromIterable((Iterable<T>) args[0]).map(this::store));
+                // Repositories whose ids come from a sequence only report the row count
+                yield method.getReturnType() == Mono.class ? stored.count().map(Long::intValue) : stored;
+            }
+            case "findById" -> Mono.fromCallable(() -> rows.get((ID) args[0]));
+            case "existsById" -> Mono.fromCallable(() -> rows.containsKey((ID) args[0]));
+            case "findAll" -> Flux.defer(() -> Flux.fromIterable(rows.values()));
+            case "count" -> Mono.fromCallable(() -> (long) rows.size());
+            case "deleteAll" -> Mono.fromRunnable(this::clear);
+            case "toString" -> "InMemoryRepository(" + rows.size() + " rows)";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> {
+                Function<Object[], Object> query = queries.get(name);
+                if (query != null) {
+                    yield query.apply(args);
+                }
+                Index<T> index = indexes.get(name);
+                if (index == null) {
+                    throw new UnsupportedOperationException(method.toGenericString());
+                }
+                if (args[0] instanceof Object[] keys) {
+                    // "= ANY($1)" finders take an array of keys
+                    yield Flux.defer(() -> Flux.fromArray(keys).mapNotNull(index.entries::get));
+                }
+                yield Mono.fromCallable(() -> index.entries.get(args[0]));
+            }
+        };
+    }
+
+    private T store(T entity) {
+        ID id = idGetter.apply(entity);
+        if (id == null) {
+            id = idGenerator.get();
+            idSetter.accept(entity, id);
+        }
+        rows.put(id, entity);
+        for (Index<T> index : indexes.values()) {
+            Object key = index.keyExtractor.apply(entity);
+            if (key != null) {
+                index.entries.put(key, entity);
+            }
+        }
+        return entity;
+    }
+
+    private static final class Index<T> {
+        private final Function<T, Object> keyExtractor;
+        private final Map<Object, T> entries = new ConcurrentHashMap<>();
+
+        private Index(Function<T, Object> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+        }
+    }
+}
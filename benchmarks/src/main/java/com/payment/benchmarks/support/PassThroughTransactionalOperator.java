@@ -0,0 +1,46 @@
+package com.payment.benchmarks.support;
+
+import org.springframework.transaction.ReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the wrapped publisher without a transaction; the in-memory repositories have none.
+ */
+public final class PassThroughTransactionalOperator implements TransactionalOperator {
+
+    @Override
+    public <T> Flux<T> execute(TransactionCallback<T> action) {
+        return Flux.defer(() -> action.doInTransaction(NoTransaction.INSTANCE));
+    }
+
+    @Override
+    public <T> Mono<T> transactional(Mono<T> mono) {
+        return mono;
+    }
+
+    private enum NoTransaction implements ReactiveTransaction {
+        INSTANCE;
+
+        @Override
+        public boolean isNewTransaction() {
+            return false;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return false;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return false;
+        }
+    }
+}
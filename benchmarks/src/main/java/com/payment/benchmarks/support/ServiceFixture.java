@@ -0,0 +1,257 @@
+package com.payment.benchmarks.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.entity.IdempotencyKey;
+import com.payment.entity.OutboxEvent;
+import com.payment.entity.Payment;
+import com.payment.entity.Payout;
+import com.payment.money.Money;
+import com.payment.money.MoneyJacksonModule;
+import com.payment.money.PercentageCommissionRule;
+import com.payment.repository.IdempotencyKeyRepository;
+import com.payment.repository.OutboxRepository;
+import com.payment.repository.PaymentRepository;
+import com.payment.repository.PayoutRepository;
+import com.payment.service.EventEncoder;
+import com.payment.service.IdempotencyKeyFilter;
+import com.payment.service.IdempotencyService;
+import com.payment.service.JobServiceClient;
+import com.payment.service.KafkaEventProducer;
+import com.payment.service.NotificationCoalescer;
+import com.payment.service.OutboxRelay;
+import com.payment.service.PaymentProviderService;
+import com.payment.service.PaymentService;
+import com.payment.service.PayoutService;
+import com.payment.service.ProviderOrderIndex;
+import com.payment.service.ReactiveEventPublisher;
+import com.payment.service.SettlementEngine;
+import com.payment.service.StageMetrics;
+import com.payment.service.StatusCache;
+import com.payment.service.WebhookIngestionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wires the real services against in-memory stand-ins for Postgres, Redis and Kafka.
+ * Events land in {@link #outbox} until {@link #outboxRelay} is run.
+ */
+public final class ServiceFixture {
+
+    public static final String STRIPE_WEBHOOK_SECRET = "whsec_benchmark";
+    public static final String CASHFREE_SECRET_KEY = "cashfree_benchmark";
+
+    /** Payment id to the aggregated payout that paid it, standing in for {@code payout_items}. */
+    public final Map<UUID, UUID> payoutItems = new ConcurrentHashMap<>();
+    public final InMemoryRepository<Payment, UUID> payments = InMemoryRepository.withUuidIds(Payment::getId, Payment::setId)
+            .index("findByProviderOrderId", Payment::getProviderOrderId)
+            .query("findIdByProviderOrderId", args -> Mono.fromCallable(() ->
+                    paymentByProviderOrderId((String) args[0])).map(Payment::getId))
+            .query("lookup", args -> Mono.fromCallable(() -> paymentRows().get((UUID) args[0])))
+            .query("findStatusById", args -> Mono.fromCallable(() -> paymentRows().get((UUID) args[0])).map(Payment::getStatus))
+            .query("updateStatusIfChanged", args -> Mono.fromCallable(() -> {
+                Payment payment = paymentRows().get((UUID) args[0]);
+                if (payment == null || args[1].equals(payment.getStatus())) {
+                    return null;
+                }
+                payment.setStatus((String) args[1]);
+                payment.setUpdatedAt((LocalDateTime) args[2]);
+                return payment;
+            }))
+            .query("findUnpaidByLabourId", args -> Flux.defer(() -> Flux.fromStream(paymentRows().values().stream()
+                    .filter(payment -> args[0].equals(payment.getLabourId()) && unpaid(payment))
+                    .sorted(Comparator.comparing(Payment::getCreatedAt))
+                    .limit((Integer) args[1]))))
+            .query("lockByIds", args -> Flux.defer(() -> Flux.fromArray((UUID[]) args[0])
+                    .filter(id -> paymentRows().containsKey(id))))
+            .query("findUnpaidByIds", args -> Flux.defer(() -> Flux.fromArray((UUID[]) args[0])
+                    .mapNotNull(id -> paymentRows().get(id))
+                    .filter(this::unpaid)));
+    public final InMemoryRepository<Payout, UUID> payouts = InMemoryRepository.withUuidIds(Payout::getId, Payout::setId)
+            .index("findByPaymentId", Payout::getPaymentId)
+            .query("findStatusById", args -> Mono.fromCallable(() -> payoutRows().get((UUID) args[0])).map(Payout::getSettlementStatus))
+            .query("isPaymentPaidOut", args -> Mono.fromCallable(() -> !unpaid(paymentRows().get((UUID) args[0]))))
+            .query("insertItems", args -> Mono.fromCallable(() -> {
+                UUID[] paymentIds = (UUID[]) args[1];
+                for (UUID paymentId : paymentIds) {
+                    payoutItems.put(paymentId, (UUID) args[0]);
+                }
+                return paymentIds.length;
+            }))
+            // Single worker only, nothing here stands in for SKIP LOCKED
+            .query("lockPendingBatch", args -> Flux.defer(() -> Flux.fromStream(payoutRows().values().stream()
+                    .filter(payout -> "PENDING".equals(payout.getSettlementStatus()))
+                    .sorted(Comparator.comparing(Payout::getCreatedAt))
+                    .limit((Integer) args[0]))))
+            .query("updateSettlement", args -> Mono.fromCallable(() -> {
+                int updated = 0;
+                for (UUID id : (UUID[]) args[0]) {
+                    Payout payout = payoutRows().get(id);
+                    if (payout != null) {
+                        payout.setSettlementStatus((String) args[1]);
+                        payout.setSettlementBatchId((String) args[2]);
+                        payout.setUpdatedAt((LocalDateTime) args[3]);
+                        updated++;
+                    }
+                }
+                return updated;
+            }));
+    public final InMemoryRepository<IdempotencyKey, UUID> idempotencyKeys = InMemoryRepository.withUuidIds(IdempotencyKey::getId, IdempotencyKey::setId)
+            .index("findByIdempotencyKey", IdempotencyKey::getIdempotencyKey);
+    public final InMemoryRepository<OutboxEvent, Long> outbox =
+            new InMemoryRepository<>(OutboxEvent::getId, OutboxEvent::setId, new AtomicLong()::incrementAndGet)
+                    .query("tryAdvisoryTransactionLock", args -> Mono.just(true))
+                    .query("lockNextBatch", args -> Flux.defer(() -> Flux.fromStream(outboxRows().values().stream()
+                            .sorted(Comparator.comparing(OutboxEvent::getId))
+                            .limit((Integer) args[0]))))
+                    .query("deleteByIds", args -> Mono.fromCallable(() -> {
+                        int deleted = 0;
+                        for (Long id : (Long[]) args[0]) {
+                            deleted += outboxRows().remove(id) != null ? 1 : 0;
+                        }
+                        return deleted;
+                    }));
+    public final InMemoryReactiveRedisTemplate redisTemplate = new InMemoryReactiveRedisTemplate();
+    public final AcknowledgingKafkaSender kafkaSender = new AcknowledgingKafkaSender();
+    public final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new MoneyJacksonModule())
+            .build();
+    public final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    public final StatusCache paymentStatusCache =
+            new StatusCache("payment", "", redisTemplate, meterRegistry, 100_000, Duration.ofSeconds(30));
+    public final StatusCache payoutStatusCache =
+            new StatusCache("payout", "payout:status:", redisTemplate, meterRegistry, 100_000, Duration.ofSeconds(30));
+
+    public final EventEncoder eventEncoder;
+    public final NotificationCoalescer notificationCoalescer;
+    public final KafkaEventProducer kafkaEventProducer;
+    public final OutboxRelay outboxRelay;
+    public final IdempotencyKeyFilter idempotencyKeyFilter;
+    public final PaymentService paymentService;
+    public final PayoutService payoutService;
+    public final SettlementEngine settlementEngine;
+    public final WebhookIngestionService webhookIngestionService;
+
+    public ServiceFixture() {
+        this(Set.of(), Duration.ZERO);
+    }
+
+    /**
+     * @param binaryTopics   topics whose events use the binary encoding, all others get JSON
+     * @param coalesceWindow notification coalescing window, zero writes each notification directly
+     */
+    public ServiceFixture(Set<String> binaryTopics, Duration coalesceWindow) {
+        this.eventEncoder = new EventEncoder(objectMapper, binaryTopics);
+        this.notificationCoalescer = new NotificationCoalescer(outbox.as(OutboxRepository.class), eventEncoder,
+                meterRegistry, coalesceWindow, 50, 10_000, Duration.ofSeconds(1), Duration.ofSeconds(10));
+        WebClient webClient = WebClient.create();
+        PaymentRepository paymentRepository = payments.as(PaymentRepository.class);
+        PayoutRepository payoutRepository = payouts.as(PayoutRepository.class);
+        IdempotencyKeyRepository idempotencyKeyRepository = idempotencyKeys.as(IdempotencyKeyRepository.class);
+
+        this.kafkaEventProducer = new KafkaEventProducer(outbox.as(OutboxRepository.class), eventEncoder, notificationCoalescer);
+        TransactionalOperator transactionalOperator = new PassThroughTransactionalOperator();
+        this.outboxRelay = new OutboxRelay(outbox.as(OutboxRepository.class), new ReactiveEventPublisher(kafkaSender),
+                transactionalOperator, meterRegistry, 500, 32, Duration.ofSeconds(10));
+        JobServiceClient jobServiceClient = new JobServiceClient(webClient, meterRegistry, "mock",
+                Duration.ofMillis(500), Duration.ZERO, 1, 50f, Duration.ofSeconds(10), 100_000,
+                Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofHours(24), Duration.ofSeconds(10),
+                false, 100, Duration.ofMillis(5));
+        this.idempotencyKeyFilter = new IdempotencyKeyFilter(redisTemplate, meterRegistry, true, 1_000_000, 0.01, Duration.ofHours(1));
+        // The in-memory Redis never lost a bitmap, so the filter may answer from the first lookup
+        redisTemplate.store().put("idempotency:bloom:since", "0");
+        idempotencyKeyFilter.sync().block();
+        IdempotencyService idempotencyService = new IdempotencyService(idempotencyKeyRepository, redisTemplate, objectMapper,
+                idempotencyKeyFilter, meterRegistry, Duration.ofSeconds(60));
+        StageMetrics stageMetrics = new StageMetrics(meterRegistry, Duration.ofSeconds(10));
+
+        this.paymentService = new PaymentService(paymentRepository, webClient, paymentStatusCache,
+                new PaymentProviderService(webClient, webClient), kafkaEventProducer, jobServiceClient,
+                idempotencyService, new ProviderOrderIndex(redisTemplate, meterRegistry, Duration.ofDays(7)),
+                transactionalOperator, stageMetrics, 16, 100, Duration.ofMillis(50), Duration.ofDays(90));
+        this.payoutService = new PayoutService(payoutRepository, paymentRepository, jobServiceClient, payoutStatusCache,
+                transactionalOperator, new PercentageCommissionRule(1000), stageMetrics, 500, 64);
+        this.settlementEngine = new SettlementEngine(payoutRepository, kafkaEventProducer, payoutStatusCache,
+                transactionalOperator, settlementDirectory(), 5000, 1, new BigDecimal("500000"));
+        this.webhookIngestionService = new WebhookIngestionService(redisTemplate, paymentService, objectMapper,
+                STRIPE_WEBHOOK_SECRET, CASHFREE_SECRET_KEY, 16, 1024, 100, Duration.ofMillis(50), 5, Duration.ofSeconds(1),
+                Duration.ofMinutes(5), Duration.ofHours(24), Duration.ofMinutes(5), Duration.ofSeconds(10));
+    }
+
+    public void reset() {
+        payments.clear();
+        payouts.clear();
+        payoutItems.clear();
+        idempotencyKeys.clear();
+        outbox.clear();
+        redisTemplate.clear();
+    }
+
+    private Map<Long, OutboxEvent> outboxRows() {
+        return outbox.rows();
+    }
+
+    private boolean unpaid(Payment payment) {
+        return "SUCCESS".equals(payment.getStatus())
+                && !payoutItems.containsKey(payment.getId())
+                && payouts.lookup("findByPaymentId", payment.getId()) == null;
+    }
+
+    private Map<UUID, Payout> payoutRows() {
+        return payouts.rows();
+    }
+
+    private static Path settlementDirectory() {
+        try {
+            return Files.createTempDirectory("settlement-files");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<UUID, Payment> paymentRows() {
+        return payments.rows();
+    }
+
+    private Payment paymentByProviderOrderId(String providerOrderId) {
+        return payments.lookup("findByProviderOrderId", providerOrderId);
+    }
+
+    public Payment seedPayment(int sequence, String status) {
+        return seedPayment(sequence, status, UUID.randomUUID());
+    }
+
+    public Payment seedPayment(int sequence, String status, UUID labourId) {
+        Payment payment = Payment.builder()
+                .jobId(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .labourId(labourId)
+                .amount(Money.parse("1499.00"))
+                .currency("INR")
+                .paymentMethod("UPI")
+                .paymentProvider("STRIPE")
+                .providerOrderId("stripe_ord_seed_" + sequence)
+                .status(status)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        return payments.as(PaymentRepository.class).save(payment).block();
+    }
+}
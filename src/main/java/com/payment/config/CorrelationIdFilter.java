@@ -0,0 +1,42 @@
+package com.payment.config;
+
+import com.payment.logging.CorrelationId;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Gives every request a correlation id: the caller's {@value CorrelationId#HEADER} if it is a
+ * plain token of at most 64 characters, otherwise a random one. The id is echoed in the
+ * response and carried in the Reactor context of the whole request, ahead of security, so
+ * rejected requests have one too.
+ */
+@Component
+public class CorrelationIdFilter implements WebFilter, Ordered {
+
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String correlationId = exchange.getRequest().getHeaders().getFirst(CorrelationId.HEADER);
+        if (correlationId == null || !VALID.matcher(correlationId).matches()) {
+            // Only has to tell requests apart in the logs, so no SecureRandom on the event loop
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            correlationId = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+        }
+        exchange.getAttributes().put(CorrelationId.KEY, correlationId);
+        exchange.getResponse().getHeaders().set(CorrelationId.HEADER, correlationId);
+        return chain.filter(exchange).contextWrite(Context.of(CorrelationId.KEY, correlationId));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
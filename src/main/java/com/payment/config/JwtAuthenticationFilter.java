@@ -0,0 +1,63 @@
+package com.payment.config;
+
+import com.payment.service.JwtService;
+import io.jsonwebtoken.Claims;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authenticates {@code Authorization: Bearer} requests through {@link JwtService} and puts
+ * the token subject into the Reactor context as the security principal, with a
+ * {@code ROLE_<name>} authority for each name in the token's {@code roles} claim. Requests without the
+ * header pass through unauthenticated, so permitted paths still work; a bad token is
+ * rejected with 401 straight away.
+ */
+public class JwtAuthenticationFilter implements WebFilter {
+
+    private static final String ROLES_CLAIM = "roles";
+
+    private final JwtService jwtService;
+
+    public JwtAuthenticationFilter(JwtService jwtService) {
+        this.jwtService = jwtService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authorization = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization == null) {
+            return chain.filter(exchange);
+        }
+        // Verification is a cache lookup for tokens seen before, cheap enough for the event loop
+        return jwtService.authenticate(authorization)
+                .map(claims -> chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                        new UsernamePasswordAuthenticationToken(claims.getSubject(), claims, authorities(claims)))))
+                .orElseGet(() -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+                    return exchange.getResponse().setComplete();
+                });
+    }
+
+    private static List<GrantedAuthority> authorities(Claims claims) {
+        if (!(claims.get(ROLES_CLAIM) instanceof Collection<?> roles)) {
+            return List.of();
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (Object role : roles) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        return authorities;
+    }
+}
@@ -1,9 +1,39 @@
 package com.payment.config;
 
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import java.util.Map;
 
 @Configuration
 @EnableKafka
 public class KafkaConfig {
+
+    @Value("${payment.kafka.max-in-flight:1024}")
+    private int maxInFlight;
+
+    /**
+     * Producer for pre-encoded events. Sends run on the sender's own scheduler, so a metadata
+     * fetch or a full {@code buffer.memory} blocks there instead of on the event loop, and at
+     * most {@code payment.kafka.max-in-flight} records per send stream await acknowledgement.
+     */
+    @Bean(destroyMethod = "close")
+    public KafkaSender<String, byte[]> eventSender(KafkaProperties kafkaProperties, ObjectProvider<SslBundles> sslBundles) {
+        Map<String, Object> properties = kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable());
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        // Acknowledged means written to all in-sync replicas, and retries keep per-key order
+        properties.putIfAbsent(ProducerConfig.ACKS_CONFIG, "all");
+        properties.putIfAbsent(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return KafkaSender.create(SenderOptions.<String, byte[]>create(properties).maxInFlight(maxInFlight));
+    }
 }
@@ -0,0 +1,45 @@
+package com.payment.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.payment.money.CommissionRule;
+import com.payment.money.MoneyConverters;
+import com.payment.money.MoneyJacksonModule;
+import com.payment.money.PercentageCommissionRule;
+import com.payment.money.SlabCommissionRule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+
+@Configuration
+public class MoneyConfig {
+
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(PostgresDialect.INSTANCE, MoneyConverters.all());
+    }
+
+    @Bean
+    public Module moneyJacksonModule() {
+        return new MoneyJacksonModule();
+    }
+
+    /**
+     * {@code payment.commission.rule} is {@code percentage}, using
+     * {@code payment.commission.percentage}, or {@code slab}, using
+     * {@code payment.commission.slabs}. A {@link CommissionRule} bean of your own replaces both.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public CommissionRule commissionRule(@Value("${payment.commission.rule:percentage}") String rule,
+                                         @Value("${payment.commission.percentage:10}") String percentage,
+                                         @Value("${payment.commission.slabs:*:10}") String slabs) {
+        return switch (rule.toLowerCase()) {
+            case "percentage" -> new PercentageCommissionRule(CommissionRule.basisPoints(percentage));
+            case "slab" -> SlabCommissionRule.parse(slabs);
+            default -> throw new IllegalArgumentException("Unknown payment.commission.rule " + rule);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.payment.config;
+
+import com.payment.service.StatusCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import java.time.Duration;
+
+@Configuration
+public class StatusCacheConfig {
+
+    @Value("${payment.status-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${payment.status-cache.local-ttl:30s}")
+    private Duration localTtl;
+
+    @Bean(destroyMethod = "close")
+    public StatusCache paymentStatusCache(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                                         ReactiveRedisMessageListenerContainer listenerContainer,
+                                         MeterRegistry meterRegistry) {
+        // Payment statuses have always been stored under the bare payment id
+        StatusCache cache = new StatusCache("payment", "", redisTemplate, meterRegistry, maximumSize, localTtl);
+        cache.subscribeInvalidations(listenerContainer);
+        return cache;
+    }
+
+    @Bean(destroyMethod = "close")
+    public StatusCache payoutStatusCache(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                                        ReactiveRedisMessageListenerContainer listenerContainer,
+                                        MeterRegistry meterRegistry) {
+        StatusCache cache = new StatusCache("payout", "payout:status:", redisTemplate, meterRegistry, maximumSize, localTtl);
+        cache.subscribeInvalidations(listenerContainer);
+        return cache;
+    }
+}
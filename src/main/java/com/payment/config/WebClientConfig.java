@@ -1,16 +1,106 @@
 package com.payment.config;
 
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * One {@link WebClient} per downstream, each on its own Reactor Netty connection pool, so a
+ * slow payment provider cannot take the connections the job service needs.
+ *
+ * <p>Every pool is configured under {@code payment.http.<name>}: {@code max-connections},
+ * {@code pending-acquire-max-count}, {@code pending-acquire-timeout}, {@code max-idle-time},
+ * {@code max-life-time}, {@code connect-timeout}, {@code response-timeout} and
+ * {@code http2}. Pool gauges and the acquire timer are published as
+ * {@code reactor.netty.connection.provider.*}, tagged with the pool name.
+ */
 @Configuration
 public class WebClientConfig {
 
+    private final Environment environment;
+    private final List<ConnectionProvider> pools = new CopyOnWriteArrayList<>();
+
+    public WebClientConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     @Bean
+    @Primary
     public WebClient webClient(WebClient.Builder builder) {
         return builder
                 .defaultHeader("Content-Type", "application/json")
                 .build();
     }
+
+    @Bean
+    public WebClient jobServiceWebClient(WebClient.Builder builder) {
+        return client(builder, "job-service", 200, Duration.ofSeconds(2), false);
+    }
+
+    @Bean
+    public WebClient stripeWebClient(WebClient.Builder builder) {
+        return client(builder, "stripe", 50, Duration.ofSeconds(10), true)
+                .mutate()
+                .baseUrl(environment.getProperty("payment.providers.stripe.base-url", "https://api.stripe.com"))
+                .build();
+    }
+
+    @Bean
+    public WebClient cashfreeWebClient(WebClient.Builder builder) {
+        return client(builder, "cashfree", 50, Duration.ofSeconds(10), true)
+                .mutate()
+                .baseUrl(environment.getProperty("payment.providers.cashfree.base-url", "https://sandbox.cashfree.com/pg"))
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(ConnectionProvider::dispose);
+    }
+
+    private WebClient client(WebClient.Builder builder, String name, int defaultMaxConnections,
+                             Duration defaultResponseTimeout, boolean defaultHttp2) {
+        String prefix = "payment.http." + name + ".";
+        int maxConnections = environment.getProperty(prefix + "max-connections", Integer.class, defaultMaxConnections);
+
+        ConnectionProvider pool = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(environment.getProperty(prefix + "pending-acquire-max-count", Integer.class, maxConnections * 2))
+                .pendingAcquireTimeout(duration(prefix + "pending-acquire-timeout", Duration.ofSeconds(1)))
+                .maxIdleTime(duration(prefix + "max-idle-time", Duration.ofSeconds(30)))
+                .maxLifeTime(duration(prefix + "max-life-time", Duration.ofMinutes(5)))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+        pools.add(pool);
+
+        HttpClient httpClient = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) duration(prefix + "connect-timeout", Duration.ofSeconds(1)).toMillis())
+                .responseTimeout(duration(prefix + "response-timeout", defaultResponseTimeout));
+        if (environment.getProperty(prefix + "http2", Boolean.class, defaultHttp2)) {
+            // HTTP/2 is negotiated over TLS through ALPN, servers without it get HTTP/1.1
+            httpClient = httpClient.secure().protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader("Content-Type", "application/json")
+                .build();
+    }
+
+    private Duration duration(String property, Duration defaultValue) {
+        return environment.getProperty(property, Duration.class, defaultValue);
+    }
 }
@@ -1,14 +1,28 @@
 package com.payment.controller;
 
+import com.payment.dto.BatchPaymentResult;
+import com.payment.dto.HistoryCursor;
 import com.payment.dto.PaymentRequest;
 import com.payment.dto.PaymentResponse;
+import com.payment.entity.Payment;
+import com.payment.logging.CorrelationId;
+import com.payment.logging.LogRateLimiter;
+import com.payment.service.HistoryService;
 import com.payment.service.PaymentService;
+import com.payment.service.PaymentStatusStreamService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -16,11 +30,42 @@ import java.util.UUID;
 @RequestMapping("/payments")
 public class PaymentController {
 
+    private static final LogRateLimiter BULK_STATUS_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+
     private final PaymentService paymentService;
+    private final PaymentStatusStreamService paymentStatusStreamService;
+    private final HistoryService historyService;
+    private final Duration streamHeartbeat;
 
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService,
+                             PaymentStatusStreamService paymentStatusStreamService,
+                             HistoryService historyService,
+                             @Value("${payment.status-stream.heartbeat:15s}") Duration streamHeartbeat) {
         this.paymentService = paymentService;
+        this.paymentStatusStreamService = paymentStatusStreamService;
+        this.historyService = historyService;
+        this.streamHeartbeat = streamHeartbeat;
+    }
+
+    /**
+     * Streams the payments of a user or of a job, newest first. The next request passes the
+     * {@code createdAt,id} of the last payment received as {@code before}.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Payment> getPaymentHistory(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) UUID jobId,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "100") int limit) {
+        if ((userId == null) == (jobId == null)) {
+            throw new IllegalArgumentException("Exactly one of userId and jobId is required");
+        }
+        HistoryCursor cursor = HistoryCursor.parse(before);
+        log.info("Streaming payment history for {} {}", userId != null ? "user" : "job", userId != null ? userId : jobId);
+        return userId != null
+                ? historyService.paymentsByUser(userId, cursor, limit)
+                : historyService.paymentsByJob(jobId, cursor, limit);
     }
 
     @PostMapping("/initiate")
@@ -28,41 +73,72 @@ public class PaymentController {
             @RequestHeader(value = "Authorization", required = false) String token, // Token is now optional
             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody PaymentRequest request) {
-        log.info("Received payment initiation request for job: {}", request.getJobId());
         // We still pass the token (even if null) to the service, but the service will ignore it.
         return paymentService.initiatePayment(request, token, idempotencyKey)
                 .map(response -> ResponseEntity.status(HttpStatus.CREATED).body(response))
-                .onErrorResume(error -> {
-                    log.error("Error initiating payment", error);
-                    if (error instanceof IllegalArgumentException) {
-                        return Mono.just(ResponseEntity.badRequest().build());
-                    }
-                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
-                });
+                .onErrorResume(error -> CorrelationId.logError(log, "Error initiating payment", error)
+                        .then(Mono.fromSupplier(() -> {
+                            if (error instanceof IllegalArgumentException) {
+                                return ResponseEntity.badRequest().<PaymentResponse>build();
+                            }
+                            if (error instanceof IllegalStateException) {
+                                return ResponseEntity.status(HttpStatus.CONFLICT).<PaymentResponse>build();
+                            }
+                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<PaymentResponse>build();
+                        })));
+    }
+
+    @PostMapping(value = "/initiate/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchPaymentResult> initiatePaymentBatch(
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @RequestBody Flux<PaymentRequest> requests) {
+        log.info("Received batch payment initiation request");
+        return paymentService.initiatePaymentBatch(requests, token);
     }
 
     @PostMapping("/verify")
     public Mono<ResponseEntity<Void>> verifyPayment(
             @RequestParam String providerOrderId,
             @RequestParam String transactionId) {
-        log.info("Received payment verification request");
         return paymentService.verifyPayment(providerOrderId, transactionId)
                 .then(Mono.just(ResponseEntity.ok().<Void>build()))
-                .onErrorResume(error -> {
-                    log.error("Error verifying payment", error);
-                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
-                });
+                .onErrorResume(error -> CorrelationId.logError(log, "Error verifying payment", error)
+                        .then(Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build())));
     }
 
     @GetMapping("/status/{paymentId}")
     public Mono<ResponseEntity<String>> getPaymentStatus(@PathVariable UUID paymentId) {
-        log.info("Fetching payment status for id: {}", paymentId);
         return paymentService.getPaymentStatus(paymentId)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build())
-                .onErrorResume(error -> {
-                    log.error("Error fetching payment status", error);
-                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
-                });
+                .onErrorResume(error -> CorrelationId.logError(log, "Error fetching payment status", error)
+                        .then(Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build())));
+    }
+
+    @GetMapping(value = "/status/{paymentId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<String>>>> streamPaymentStatus(@PathVariable UUID paymentId) {
+        return paymentStatusStreamService.watch(paymentId)
+                .map(statuses -> ResponseEntity.ok().body(statuses
+                        .map(status -> ServerSentEvent.builder(status).event("status").build())
+                        // Comment lines keep idle connections open through proxies and load balancers
+                        .publish(events -> Flux.merge(events, Flux.interval(streamHeartbeat)
+                                .map(tick -> ServerSentEvent.<String>builder().comment("keep-alive").build())
+                                .takeUntilOther(events.then())))))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(error -> CorrelationId.logError(log, "Error streaming payment status", error)
+                        .then(Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build())));
+    }
+
+    @PostMapping("/status/bulk")
+    public Mono<ResponseEntity<Map<UUID, String>>> getPaymentStatuses(@RequestBody List<UUID> paymentIds) {
+        BULK_STATUS_LOGS.atInfo(log).addKeyValue("ids", paymentIds.size()).log("Fetching payment statuses");
+        return paymentService.getPaymentStatuses(paymentIds)
+                .map(ResponseEntity::ok)
+                .onErrorResume(error -> CorrelationId.logError(log, "Error fetching payment statuses", error)
+                        .then(Mono.fromSupplier(() -> error instanceof IllegalArgumentException
+                                ? ResponseEntity.badRequest().<Map<UUID, String>>build()
+                                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Map<UUID, String>>build())));
     }
-}
\ No newline at end of file
+}
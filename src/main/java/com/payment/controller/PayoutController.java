@@ -1,13 +1,23 @@
 package com.payment.controller;
 
+import com.payment.dto.HistoryCursor;
 import com.payment.dto.PayoutRequest;
+import com.payment.entity.Payout;
+import com.payment.logging.CorrelationId;
+import com.payment.logging.LogRateLimiter;
+import com.payment.service.HistoryService;
 import com.payment.service.PayoutService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -15,33 +25,68 @@ import java.util.UUID;
 @RequestMapping("/payouts")
 public class PayoutController {
 
+    private static final LogRateLimiter BULK_STATUS_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+
     private final PayoutService payoutService;
+    private final HistoryService historyService;
 
     @Autowired
-    public PayoutController(PayoutService payoutService) {
+    public PayoutController(PayoutService payoutService, HistoryService historyService) {
         this.payoutService = payoutService;
+        this.historyService = historyService;
+    }
+
+    /**
+     * Streams the payouts of a labourer, newest first. The next request passes the
+     * {@code createdAt,id} of the last payout received as {@code before}.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Payout> getPayoutHistory(
+            @RequestParam UUID labourId,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("Streaming payout history for labour {}", labourId);
+        return historyService.payoutsByLabour(labourId, HistoryCursor.parse(before), limit);
     }
 
     @PostMapping("/initiate")
     public Mono<ResponseEntity<Void>> initiatePayoutToLabour(@RequestBody PayoutRequest request) {
-        log.info("Received payout initiation request");
         return payoutService.initiatePayoutToLabour(request.getPaymentId(), request.getLabourId(), request.getBankAccountRef())
                 .then(Mono.just(ResponseEntity.status(HttpStatus.CREATED).<Void>build()))
-                .onErrorResume(error -> {
-                    log.error("Error initiating payout", error);
-                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
-                });
+                .onErrorResume(error -> CorrelationId.logError(log, "Error initiating payout", error)
+                        .then(Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build())));
+    }
+
+    @PostMapping("/initiate/aggregate")
+    public Mono<ResponseEntity<Map<String, Object>>> initiateAggregatedPayout(@RequestBody PayoutRequest request) {
+        return payoutService.initiateAggregatedPayout(request.getLabourId(), request.getBankAccountRef())
+                .map(payout -> ResponseEntity.status(HttpStatus.CREATED).body(Map.<String, Object>of(
+                        "payoutId", payout.getId(),
+                        "amount", payout.getAmount(),
+                        "commission", payout.getCommission())))
+                .onErrorResume(error -> CorrelationId.logError(log, "Error initiating aggregated payout", error)
+                        .then(Mono.fromSupplier(() -> error instanceof IllegalStateException
+                                ? ResponseEntity.status(HttpStatus.CONFLICT).<Map<String, Object>>build()
+                                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Map<String, Object>>build())));
     }
 
     @GetMapping("/status/{payoutId}")
     public Mono<ResponseEntity<String>> getPayoutStatus(@PathVariable UUID payoutId) {
-        log.info("Fetching payout status for id: {}", payoutId);
         return payoutService.getPayoutStatus(payoutId)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build())
-                .onErrorResume(error -> {
-                    log.error("Error fetching payout status", error);
-                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
-                });
+                .onErrorResume(error -> CorrelationId.logError(log, "Error fetching payout status", error)
+                        .then(Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build())));
+    }
+
+    @PostMapping("/status/bulk")
+    public Mono<ResponseEntity<Map<UUID, String>>> getPayoutStatuses(@RequestBody List<UUID> payoutIds) {
+        BULK_STATUS_LOGS.atInfo(log).addKeyValue("ids", payoutIds.size()).log("Fetching payout statuses");
+        return payoutService.getPayoutStatuses(payoutIds)
+                .map(ResponseEntity::ok)
+                .onErrorResume(error -> CorrelationId.logError(log, "Error fetching payout statuses", error)
+                        .then(Mono.fromSupplier(() -> error instanceof IllegalArgumentException
+                                ? ResponseEntity.badRequest().<Map<UUID, String>>build()
+                                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Map<UUID, String>>build())));
     }
 }
@@ -0,0 +1,62 @@
+package com.payment.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.payment.logging.CorrelationId;
+import com.payment.service.WebhookIngestionService;
+import com.payment.service.WebhookIngestionService.Outcome;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/**
+ * Provider webhooks. Events are acknowledged as soon as they are authenticated and
+ * queued; payment verification happens afterwards in {@link WebhookIngestionService}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/webhooks")
+public class WebhookController {
+
+    private final WebhookIngestionService webhookIngestionService;
+
+    @Autowired
+    public WebhookController(WebhookIngestionService webhookIngestionService) {
+        this.webhookIngestionService = webhookIngestionService;
+    }
+
+    @PostMapping("/stripe")
+    public Mono<ResponseEntity<Void>> stripe(
+            @RequestHeader(value = "Stripe-Signature", required = false) String signature,
+            @RequestBody byte[] body) {
+        return respond("stripe", webhookIngestionService.ingestStripe(signature, body));
+    }
+
+    @PostMapping("/cashfree")
+    public Mono<ResponseEntity<Void>> cashfree(
+            @RequestHeader(value = "x-webhook-signature", required = false) String signature,
+            @RequestHeader(value = "x-webhook-timestamp", required = false) String timestamp,
+            @RequestBody byte[] body) {
+        return respond("cashfree", webhookIngestionService.ingestCashfree(signature, timestamp, body));
+    }
+
+    private Mono<ResponseEntity<Void>> respond(String provider, Mono<Outcome> outcome) {
+        return outcome
+                .map(result -> switch (result) {
+                    // Duplicates and irrelevant events are acknowledged so the provider stops retrying them
+                    case ACCEPTED, DUPLICATE, IGNORED -> ResponseEntity.ok().<Void>build();
+                    case INVALID_SIGNATURE -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).<Void>build();
+                    case OVERLOADED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).<Void>build();
+                })
+                .onErrorResume(error -> CorrelationId.logError(log, "Error ingesting " + provider + " webhook", error)
+                        .then(Mono.fromSupplier(() -> error instanceof JsonProcessingException
+                                ? ResponseEntity.badRequest().<Void>build()
+                                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Void>build())));
+    }
+}
@@ -0,0 +1,22 @@
+package com.payment.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchPaymentResult {
+
+    // Position of the item in the submitted batch, results are streamed in completion order
+    private long index;
+    private String idempotencyKey;
+    private boolean success;
+    private PaymentResponse payment;
+    private String error;
+}
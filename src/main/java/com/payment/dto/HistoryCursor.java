@@ -0,0 +1,40 @@
+package com.payment.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Position in a newest-first history, written {@code createdAt,id} from the last row received.
+ * The rows strictly older than it come next.
+ */
+public record HistoryCursor(LocalDateTime createdAt, UUID id) {
+
+    /** Before every row, so a history starts with the newest. */
+    public static final HistoryCursor START = new HistoryCursor(LocalDateTime.of(9999, 1, 1, 0, 0), new UUID(-1L, -1L));
+
+    /**
+     * @return {@link #START} for a missing cursor
+     * @throws IllegalArgumentException if {@code value} is not {@code createdAt,id}
+     */
+    public static HistoryCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return START;
+        }
+        int separator = value.indexOf(',');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Cursor must be createdAt,id");
+        }
+        try {
+            return new HistoryCursor(LocalDateTime.parse(value.substring(0, separator).trim()),
+                    UUID.fromString(value.substring(separator + 1).trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor must be createdAt,id", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createdAt + "," + id;
+    }
+}
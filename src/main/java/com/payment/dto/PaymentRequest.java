@@ -1,10 +1,10 @@
 package com.payment.dto;
 
+import com.payment.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Data
@@ -16,7 +16,10 @@ public class PaymentRequest {
     private UUID jobId;
     private UUID userId;
     private UUID labourId;
-    private BigDecimal amount;
+    private Money amount;
     private String paymentMethod;
     private String paymentProvider;
+
+    // Only read by the batch endpoint; single requests use the Idempotency-Key header
+    private String idempotencyKey;
 }
@@ -1,10 +1,10 @@
 package com.payment.dto;
 
+import com.payment.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -18,7 +18,7 @@ public class PaymentResponse {
     private UUID jobId;
     private UUID userId;
     private UUID labourId;
-    private BigDecimal amount;
+    private Money amount;
     private String status;
     private String paymentLink;
     private LocalDateTime createdAt;
@@ -0,0 +1,9 @@
+package com.payment.dto;
+
+import java.util.UUID;
+
+/**
+ * Id and status of a payment or payout, read without loading the full row.
+ */
+public record StatusView(UUID id, String status) {
+}
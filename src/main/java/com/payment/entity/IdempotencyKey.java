@@ -1,6 +1,5 @@
 package com.payment.entity;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -27,8 +26,9 @@ public class IdempotencyKey {
     @Column("request_hash")
     private String requestHash;
 
+    // JSON response as written by CompactJson
     @Column("response_data")
-    private JsonNode responseData;
+    private byte[] responseData;
 
     private String status;
 
@@ -0,0 +1,43 @@
+package com.payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table("outbox")
+public class OutboxEvent {
+
+    @Id
+    private Long id;
+
+    // Events of one aggregate are relayed in id order, different aggregates in parallel
+    @Column("aggregate_id")
+    private String aggregateId;
+
+    private String topic;
+
+    @Column("message_key")
+    private String messageKey;
+
+    @Column("event_type")
+    private String eventType;
+
+    // Wire format of payload, sent as the content-type header
+    @Column("content_type")
+    private String contentType;
+
+    // Already encoded for the topic, the relay sends it as is
+    private byte[] payload;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+}
@@ -1,6 +1,7 @@
 package com.payment.entity;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.payment.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,7 +9,6 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -31,7 +31,7 @@ public class Payment {
     @Column("labour_id")
     private UUID labourId;
 
-    private BigDecimal amount;
+    private Money amount;
     
     private String currency;
 
@@ -1,5 +1,6 @@
 package com.payment.entity;
 
+import com.payment.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,7 +8,6 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -30,9 +30,9 @@ public class Payout {
     @Column("labour_id")
     private UUID labourId;
 
-    private BigDecimal amount;
+    private Money amount;
 
-    private BigDecimal commission;
+    private Money commission;
 
     @Column("settlement_status")
     private String settlementStatus;
@@ -40,6 +40,10 @@ public class Payout {
     @Column("bank_account_ref")
     private String bankAccountRef;
 
+    // Bank file batch the payout was settled in, set by SettlementEngine
+    @Column("settlement_batch_id")
+    private String settlementBatchId;
+
     @Column("created_at")
     private LocalDateTime createdAt;
 
@@ -0,0 +1,268 @@
+package com.payment.event;
+
+import com.payment.money.Money;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact big-endian encoding of {@link PaymentEvent}, {@link PayoutEvent} and
+ * {@link NotificationEvent}.
+ *
+ * <pre>
+ * byte    schema version ({@value #SCHEMA_VERSION})
+ * byte    event type (1 payment, 2 payout, 3 notification)
+ * ...     fields in declaration order
+ * </pre>
+ *
+ * UUIDs are 16 bytes (all zero for null), amounts are longs in INR minor units
+ * ({@link Long#MIN_VALUE} for null), timestamps are epoch milliseconds and strings are a
+ * varint of the UTF-8 length plus one (zero for null) followed by the bytes. Notification
+ * metadata is a varint entry count followed by key/value strings.
+ */
+public final class BinaryEventCodec {
+
+    public static final String CONTENT_TYPE = "application/vnd.payment.event+binary";
+    public static final byte SCHEMA_VERSION = 1;
+
+    private static final byte PAYMENT = 1;
+    private static final byte PAYOUT = 2;
+    private static final byte NOTIFICATION = 3;
+    private static final int HEADER = 2;
+    private static final int UUID_BYTES = 16;
+    private static final long NULL_AMOUNT = Long.MIN_VALUE;
+
+    private BinaryEventCodec() {
+    }
+
+    public static byte[] encode(Object event) {
+        if (event instanceof PaymentEvent payment) {
+            return encode(payment);
+        }
+        if (event instanceof PayoutEvent payout) {
+            return encode(payout);
+        }
+        if (event instanceof NotificationEvent notification) {
+            return encode(notification);
+        }
+        throw new IllegalArgumentException("No binary encoding for " + event.getClass().getName());
+    }
+
+    public static byte[] encode(PaymentEvent event) {
+        byte[] status = utf8(event.getStatus());
+        ByteBuffer buffer = allocate(PAYMENT, HEADER + 3 * UUID_BYTES + sizeOf(status) + 2 * Long.BYTES);
+        putUuid(buffer, event.getPaymentId());
+        putUuid(buffer, event.getJobId());
+        putUuid(buffer, event.getUserId());
+        putString(buffer, status);
+        buffer.putLong(toMinorUnits(event.getAmount()));
+        buffer.putLong(toEpochMilli(event.getTimestamp()));
+        return buffer.array();
+    }
+
+    public static byte[] encode(PayoutEvent event) {
+        byte[] status = utf8(event.getStatus());
+        ByteBuffer buffer = allocate(PAYOUT, HEADER + 3 * UUID_BYTES + sizeOf(status) + 3 * Long.BYTES);
+        putUuid(buffer, event.getPayoutId());
+        putUuid(buffer, event.getJobId());
+        putUuid(buffer, event.getLabourId());
+        putString(buffer, status);
+        buffer.putLong(toMinorUnits(event.getAmount()));
+        buffer.putLong(toMinorUnits(event.getCommission()));
+        buffer.putLong(toEpochMilli(event.getTimestamp()));
+        return buffer.array();
+    }
+
+    public static byte[] encode(NotificationEvent event) {
+        byte[][] strings = {
+                utf8(event.getUserName()),
+                utf8(event.getUsername()),
+                utf8(event.getSubject()),
+                utf8(event.getSource()),
+                utf8(event.getMessage())
+        };
+        Map<String, String> metadata = event.getMetadata() != null ? event.getMetadata() : Map.of();
+        byte[][] entries = new byte[metadata.size() * 2][];
+        int i = 0;
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            entries[i++] = utf8(entry.getKey());
+            entries[i++] = utf8(entry.getValue());
+        }
+
+        int size = HEADER + varintSize(metadata.size());
+        for (byte[] string : strings) {
+            size += sizeOf(string);
+        }
+        for (byte[] string : entries) {
+            size += sizeOf(string);
+        }
+
+        ByteBuffer buffer = allocate(NOTIFICATION, size);
+        for (byte[] string : strings) {
+            putString(buffer, string);
+        }
+        putVarint(buffer, metadata.size());
+        for (byte[] string : entries) {
+            putString(buffer, string);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a payload written by {@link #encode(Object)} into the matching event class.
+     */
+    public static Object decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        try {
+            byte version = buffer.get();
+            if (version != SCHEMA_VERSION) {
+                throw new IllegalArgumentException("Unsupported event schema version " + version);
+            }
+            byte type = buffer.get();
+            return switch (type) {
+                case PAYMENT -> PaymentEvent.builder()
+                        .paymentId(getUuid(buffer))
+                        .jobId(getUuid(buffer))
+                        .userId(getUuid(buffer))
+                        .status(getString(buffer))
+                        .amount(fromMinorUnits(buffer.getLong()))
+                        .timestamp(Instant.ofEpochMilli(buffer.getLong()))
+                        .build();
+                case PAYOUT -> PayoutEvent.builder()
+                        .payoutId(getUuid(buffer))
+                        .jobId(getUuid(buffer))
+                        .labourId(getUuid(buffer))
+                        .status(getString(buffer))
+                        .amount(fromMinorUnits(buffer.getLong()))
+                        .commission(fromMinorUnits(buffer.getLong()))
+                        .timestamp(Instant.ofEpochMilli(buffer.getLong()))
+                        .build();
+                case NOTIFICATION -> decodeNotification(buffer);
+                default -> throw new IllegalArgumentException("Unknown binary event type " + type);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary event", e);
+        }
+    }
+
+    private static NotificationEvent decodeNotification(ByteBuffer buffer) {
+        NotificationEvent event = NotificationEvent.builder()
+                .userName(getString(buffer))
+                .username(getString(buffer))
+                .subject(getString(buffer))
+                .source(getString(buffer))
+                .message(getString(buffer))
+                .build();
+        int entries = getVarint(buffer);
+        Map<String, String> metadata = new HashMap<>(Math.max(4, entries * 2));
+        for (int i = 0; i < entries; i++) {
+            metadata.put(getString(buffer), getString(buffer));
+        }
+        event.setMetadata(Collections.unmodifiableMap(metadata));
+        return event;
+    }
+
+    private static ByteBuffer allocate(byte type, int size) {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[size]);
+        buffer.put(SCHEMA_VERSION);
+        buffer.put(type);
+        return buffer;
+    }
+
+    private static long toMinorUnits(Money amount) {
+        if (amount == null) {
+            return NULL_AMOUNT;
+        }
+        if (!Money.INR.equals(amount.currency())) {
+            throw new IllegalArgumentException("Binary events carry INR amounts only, got " + amount.currency());
+        }
+        return amount.minorUnits();
+    }
+
+    private static Money fromMinorUnits(long minorUnits) {
+        return minorUnits == NULL_AMOUNT ? null : Money.ofMinor(minorUnits);
+    }
+
+    private static long toEpochMilli(Instant timestamp) {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Event timestamp is required");
+        }
+        return timestamp.toEpochMilli();
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid != null ? uuid.getMostSignificantBits() : 0L);
+        buffer.putLong(uuid != null ? uuid.getLeastSignificantBits() : 0L);
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        long most = buffer.getLong();
+        long least = buffer.getLong();
+        return most == 0L && least == 0L ? null : new UUID(most, least);
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int sizeOf(byte[] string) {
+        return string != null ? varintSize(string.length + 1) + string.length : 1;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        if (string == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        putVarint(buffer, string.length + 1);
+        buffer.put(string);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = getVarint(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in binary event");
+    }
+}
@@ -0,0 +1,30 @@
+package com.payment.event;
+
+/**
+ * Wire formats for events on Kafka. The content type travels in the {@code content-type}
+ * record header so consumers can tell them apart.
+ */
+public enum EventEncoding {
+
+    JSON("application/json"),
+    BINARY(BinaryEventCodec.CONTENT_TYPE);
+
+    private final String contentType;
+
+    EventEncoding(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public static EventEncoding fromContentType(String contentType) {
+        for (EventEncoding encoding : values()) {
+            if (encoding.contentType.equals(contentType)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unknown event content type " + contentType);
+    }
+}
@@ -13,9 +13,27 @@ import java.util.Map;
 public class NotificationEvent {
 
     private String userName;
+    // Lombok compares accessor names ignoring case, so it would generate them for only one of
+    // userName and username; both are written out below
     private String username;
     private String subject;
     private String source;
     private String message;
     private Map<String, String> metadata;
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
 }
@@ -1,9 +1,13 @@
 package com.payment.event;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.payment.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.time.Instant;
+import java.util.UUID;
 
 @Data
 @NoArgsConstructor
@@ -11,10 +15,12 @@ import lombok.NoArgsConstructor;
 @Builder
 public class PaymentEvent {
 
-    private String paymentId;
-    private String jobId;
-    private String userId;
+    private UUID paymentId;
+    private UUID jobId;
+    private UUID userId;
     private String status;
-    private String amount;
-    private String timestamp;
+    // Written as a JSON string, as consumers of the JSON encoding have always read it
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Money amount;
+    private Instant timestamp;
 }
@@ -1,9 +1,13 @@
 package com.payment.event;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.payment.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.time.Instant;
+import java.util.UUID;
 
 @Data
 @NoArgsConstructor
@@ -11,11 +15,14 @@ import lombok.NoArgsConstructor;
 @Builder
 public class PayoutEvent {
 
-    private String payoutId;
-    private String jobId;
-    private String labourId;
+    private UUID payoutId;
+    private UUID jobId;
+    private UUID labourId;
     private String status;
-    private String amount;
-    private String commission;
-    private String timestamp;
+    // Written as JSON strings, as consumers of the JSON encoding have always read them
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Money amount;
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Money commission;
+    private Instant timestamp;
 }
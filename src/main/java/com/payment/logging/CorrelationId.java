@@ -0,0 +1,64 @@
+package com.payment.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * A request's correlation id, taken from the {@value #HEADER} header or generated by
+ * {@link com.payment.config.CorrelationIdFilter}, which puts it into the Reactor context and
+ * the exchange attributes under {@value #KEY}. Errors are logged once, where the request's
+ * outcome is decided, with the id as the {@code correlationId} key/value pair.
+ */
+public final class CorrelationId {
+
+    public static final String HEADER = "X-Correlation-Id";
+    public static final String KEY = "correlationId";
+    static final String NONE = "-";
+
+    private CorrelationId() {
+    }
+
+    public static String of(ServerWebExchange exchange) {
+        return exchange.getAttributeOrDefault(KEY, NONE);
+    }
+
+    /**
+     * Logs {@code error} with the correlation id of the subscriber's context. Rejected requests
+     * ({@link IllegalArgumentException}, {@link IllegalStateException}) are logged as a warning
+     * without the stack trace, anything else as an error with it.
+     */
+    public static Mono<Void> logError(Logger log, String message, Throwable error) {
+        return logError(log, message, error, null, null);
+    }
+
+    /**
+     * Like {@link #logError(Logger, String, Throwable)}, with one more key/value pair naming
+     * what failed, e.g. the item of a batch.
+     */
+    public static Mono<Void> logError(Logger log, String message, Throwable error, String key, Object value) {
+        return Mono.deferContextual(context -> {
+            log(log, message, error, context.getOrDefault(KEY, NONE), key, value);
+            return Mono.empty();
+        });
+    }
+
+    public static void log(Logger log, String message, Throwable error, String correlationId) {
+        log(log, message, error, correlationId, null, null);
+    }
+
+    private static void log(Logger log, String message, Throwable error, String correlationId, String key, Object value) {
+        LoggingEventBuilder event;
+        if (error instanceof IllegalArgumentException || error instanceof IllegalStateException) {
+            event = log.atWarn().addKeyValue("error", error.getMessage());
+        } else {
+            event = log.atError().setCause(error);
+        }
+        event = event.addKeyValue(KEY, correlationId);
+        if (key != null) {
+            event = event.addKeyValue(key, value);
+        }
+        event.log(message);
+    }
+}
@@ -0,0 +1,42 @@
+package com.payment.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets one line of a hot-path log statement through per interval and counts the rest. The line
+ * that gets through carries the number skipped since the previous one as {@code suppressed};
+ * skipped lines cost a counter increment and format nothing.
+ */
+public final class LogRateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLong nextAllowed;
+    private final LongAdder suppressed = new LongAdder();
+
+    private LogRateLimiter(Duration interval) {
+        this.intervalNanos = interval.toNanos();
+        this.nextAllowed = new AtomicLong(System.nanoTime());
+    }
+
+    public static LogRateLimiter perInterval(Duration interval) {
+        return new LogRateLimiter(interval);
+    }
+
+    public LoggingEventBuilder atInfo(Logger log) {
+        if (!log.isInfoEnabled()) {
+            return NOPLoggingEventBuilder.singleton();
+        }
+        long now = System.nanoTime();
+        long allowed = nextAllowed.get();
+        if (now - allowed < 0 || !nextAllowed.compareAndSet(allowed, now + intervalNanos)) {
+            suppressed.increment();
+            return NOPLoggingEventBuilder.singleton();
+        }
+        return log.atInfo().addKeyValue("suppressed", suppressed.sumThenReset());
+    }
+}
@@ -0,0 +1,20 @@
+package com.payment.money;
+
+import java.math.BigDecimal;
+
+/**
+ * Decides the platform commission kept from a payment before it is paid out. The payout is
+ * the payment amount minus the commission, so a rule never needs to compute both.
+ */
+@FunctionalInterface
+public interface CommissionRule {
+
+    Money commissionOn(Money amount);
+
+    /**
+     * Parses a percentage such as {@code 10} or {@code 7.25} into basis points, exactly.
+     */
+    static long basisPoints(String percent) {
+        return new BigDecimal(percent.trim()).movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,148 @@
+package com.payment.money;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Objects;
+
+/**
+ * An amount of money as a {@code long} of minor units (paise for INR) in one currency.
+ * Arithmetic is exact integer arithmetic that throws on overflow; converting from a
+ * {@link BigDecimal} finer than the currency's minor unit throws rather than rounds, and
+ * the only rounding anywhere is the explicit half-up in {@link #percentOf(long)}.
+ * Mixing currencies throws.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Currency INR = Currency.getInstance("INR");
+    public static final Money ZERO = new Money(0, INR);
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+    private static final long BASIS_POINTS = 10_000;
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return ofMinor(minorUnits, INR);
+    }
+
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        return minorUnits == 0 && currency == INR ? ZERO : new Money(minorUnits, Objects.requireNonNull(currency));
+    }
+
+    public static Money of(BigDecimal amount) {
+        return of(amount, INR);
+    }
+
+    /**
+     * @throws ArithmeticException if {@code amount} has digits below the currency's minor unit
+     */
+    public static Money of(BigDecimal amount, Currency currency) {
+        return ofMinor(amount.movePointRight(currency.getDefaultFractionDigits()).longValueExact(), currency);
+    }
+
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public long minorUnits() {
+        return minorUnits;
+    }
+
+    public Currency currency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return other.minorUnits == 0 ? this : ofMinor(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return other.minorUnits == 0 ? this : ofMinor(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money times(long factor) {
+        return ofMinor(Math.multiplyExact(minorUnits, factor), currency);
+    }
+
+    /**
+     * This amount times {@code basisPoints} / 10000, rounded half up to the minor unit.
+     */
+    public Money percentOf(long basisPoints) {
+        long scaled = Math.multiplyExact(minorUnits, basisPoints);
+        long quotient = scaled / BASIS_POINTS;
+        long remainder = Math.abs(scaled % BASIS_POINTS);
+        if (remainder * 2 >= BASIS_POINTS) {
+            quotient += Long.signum(scaled);
+        }
+        return ofMinor(quotient, currency);
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    /**
+     * Appends the plain decimal form, e.g. {@code 1499.00}, without intermediate objects.
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        int digits = currency.getDefaultFractionDigits();
+        long major = minorUnits / POWERS_OF_TEN[digits];
+        long minor = Math.abs(minorUnits % POWERS_OF_TEN[digits]);
+        if (minorUnits < 0 && major == 0) {
+            out.append('-');
+        }
+        out.append(major);
+        if (digits > 0) {
+            out.append('.');
+            for (long power = POWERS_OF_TEN[digits - 1]; power > minor && power > 1; power /= 10) {
+                out.append('0');
+            }
+            out.append(minor);
+        }
+        return out;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other
+                || other instanceof Money money && minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot combine " + currency + " and " + other.currency);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.payment.money;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Maps {@link Money} to the {@code DECIMAL(10, 2)} amount columns. The columns hold INR,
+ * the only currency payments are taken in.
+ */
+public final class MoneyConverters {
+
+    private MoneyConverters() {
+    }
+
+    public static List<Converter<?, ?>> all() {
+        return List.of(new MoneyReadingConverter(), new MoneyWritingConverter());
+    }
+
+    @ReadingConverter
+    static final class MoneyReadingConverter implements Converter<BigDecimal, Money> {
+
+        @Override
+        public Money convert(BigDecimal source) {
+            return Money.of(source);
+        }
+    }
+
+    @WritingConverter
+    static final class MoneyWritingConverter implements Converter<Money, BigDecimal> {
+
+        @Override
+        public BigDecimal convert(Money source) {
+            return source.toBigDecimal();
+        }
+    }
+}
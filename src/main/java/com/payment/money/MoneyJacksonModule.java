@@ -0,0 +1,73 @@
+package com.payment.money;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link Money} as a plain INR decimal, the way amounts always appeared in
+ * the API: a JSON number such as {@code 1499.00}, or a string where the property is
+ * annotated {@code @JsonFormat(shape = STRING)}. Reading accepts either form and rejects
+ * amounts finer than a paisa.
+ */
+public class MoneyJacksonModule extends SimpleModule {
+
+    public MoneyJacksonModule() {
+        super("MoneyJacksonModule");
+        addSerializer(Money.class, new MoneySerializer(false));
+        addDeserializer(Money.class, new MoneyDeserializer());
+    }
+
+    private static final class MoneySerializer extends JsonSerializer<Money> implements ContextualSerializer {
+
+        private final boolean asString;
+
+        private MoneySerializer(boolean asString) {
+            this.asString = asString;
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) {
+            JsonFormat.Value format = property != null ? property.findPropertyFormat(provider.getConfig(), Money.class) : null;
+            boolean string = format != null && format.getShape() == JsonFormat.Shape.STRING;
+            return string == asString ? this : new MoneySerializer(string);
+        }
+
+        @Override
+        public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            String plain = money.toString();
+            if (asString) {
+                generator.writeString(plain);
+            } else {
+                generator.writeNumber(plain);
+            }
+        }
+    }
+
+    private static final class MoneyDeserializer extends JsonDeserializer<Money> {
+
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            try {
+                return Money.parse(parser.getText());
+            } catch (ArithmeticException | NumberFormatException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(),
+                        "not an amount in whole paise");
+            }
+        }
+    }
+}
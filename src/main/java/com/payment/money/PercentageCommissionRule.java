@@ -0,0 +1,18 @@
+package com.payment.money;
+
+/**
+ * The same percentage of every amount, rounded half up to the minor unit.
+ */
+public record PercentageCommissionRule(long basisPoints) implements CommissionRule {
+
+    public PercentageCommissionRule {
+        if (basisPoints < 0 || basisPoints > 10_000) {
+            throw new IllegalArgumentException("Commission must be between 0 and 100 percent, was " + basisPoints + " basis points");
+        }
+    }
+
+    @Override
+    public Money commissionOn(Money amount) {
+        return amount.percentOf(basisPoints);
+    }
+}
@@ -0,0 +1,70 @@
+package com.payment.money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A percentage picked by the slab the whole amount falls in, e.g. {@code 50000:10,200000:8,*:5}
+ * takes 10 percent up to and including 50000, 8 percent up to 200000 and 5 percent above.
+ * Slab bounds are in major units and must ascend; the last slab must be {@code *}.
+ */
+public final class SlabCommissionRule implements CommissionRule {
+
+    private final long[] upperBoundsMinor;
+    private final long[] basisPoints;
+
+    public SlabCommissionRule(long[] upperBoundsMinor, long[] basisPoints) {
+        if (upperBoundsMinor.length != basisPoints.length || basisPoints.length == 0) {
+            throw new IllegalArgumentException("Every commission slab needs a bound and a percentage");
+        }
+        this.upperBoundsMinor = upperBoundsMinor.clone();
+        this.basisPoints = basisPoints.clone();
+    }
+
+    public static SlabCommissionRule parse(String slabs) {
+        List<long[]> parsed = new ArrayList<>();
+        long previous = Long.MIN_VALUE;
+        String[] entries = slabs.split(",");
+        for (int i = 0; i < entries.length; i++) {
+            String[] parts = entries[i].split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Commission slab must be <upper bound>:<percent>, was " + entries[i]);
+            }
+            boolean last = i == entries.length - 1;
+            long bound;
+            if (parts[0].trim().equals("*")) {
+                if (!last) {
+                    throw new IllegalArgumentException("Only the last commission slab can be unbounded");
+                }
+                bound = Long.MAX_VALUE;
+            } else if (last) {
+                throw new IllegalArgumentException("The last commission slab must be unbounded (*)");
+            } else {
+                bound = Money.parse(parts[0].trim()).minorUnits();
+            }
+            if (bound <= previous) {
+                throw new IllegalArgumentException("Commission slab bounds must ascend");
+            }
+            previous = bound;
+            parsed.add(new long[]{bound, new PercentageCommissionRule(CommissionRule.basisPoints(parts[1])).basisPoints()});
+        }
+
+        long[] bounds = new long[parsed.size()];
+        long[] rates = new long[parsed.size()];
+        for (int i = 0; i < parsed.size(); i++) {
+            bounds[i] = parsed.get(i)[0];
+            rates[i] = parsed.get(i)[1];
+        }
+        return new SlabCommissionRule(bounds, rates);
+    }
+
+    @Override
+    public Money commissionOn(Money amount) {
+        long minor = amount.minorUnits();
+        int slab = 0;
+        while (slab < upperBoundsMinor.length - 1 && minor > upperBoundsMinor[slab]) {
+            slab++;
+        }
+        return amount.percentOf(basisPoints[slab]);
+    }
+}
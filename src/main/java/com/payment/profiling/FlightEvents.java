@@ -0,0 +1,106 @@
+package com.payment.profiling;
+
+import jdk.jfr.EventType;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Emits the payment service's Flight Recorder events. While no recording enables an event
+ * type, its calls return the given {@code Mono} as is and allocate nothing, so the events can
+ * stay in place on the hot path and cost only once {@link FlightRecorderEndpoint} records.
+ */
+public final class FlightEvents {
+
+    private static final EventType STAGE = EventType.getEventType(PaymentStageEvent.class);
+    private static final EventType REDIS = EventType.getEventType(RedisCallEvent.class);
+    private static final EventType KAFKA = EventType.getEventType(KafkaPublishEvent.class);
+    private static final EventType SETTLEMENT = EventType.getEventType(SettlementBatchEvent.class);
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Starts a stage event, or returns {@code null} when none is recorded. The caller ends it
+     * with {@link #endStage}, having already worked out the outcome for its own metrics.
+     */
+    public static PaymentStageEvent beginStage() {
+        if (!STAGE.isEnabled()) {
+            return null;
+        }
+        PaymentStageEvent event = new PaymentStageEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endStage(PaymentStageEvent event, String operation, String stage, String provider, String outcome,
+                                String cacheTier, UUID paymentId) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.stage = stage;
+            event.provider = provider;
+            event.outcome = outcome;
+            event.cacheTier = cacheTier;
+            event.paymentId = paymentId != null ? paymentId.toString() : null;
+            event.commit();
+        }
+    }
+
+    public static <T> Mono<T> redis(String command, String keyspace, Mono<T> call) {
+        return span(REDIS, () -> {
+            RedisCallEvent event = new RedisCallEvent();
+            event.command = command;
+            event.keyspace = keyspace;
+            return event;
+        }, call, null);
+    }
+
+    public static <T> Mono<T> kafka(String topic, String eventType, int payloadSize, Mono<T> send) {
+        return span(KAFKA, () -> {
+            KafkaPublishEvent event = new KafkaPublishEvent();
+            event.topic = topic;
+            event.eventType = eventType;
+            event.payloadSize = payloadSize;
+            return event;
+        }, send, null);
+    }
+
+    /**
+     * Spans a settlement batch, {@code batch} emitting how many payouts it claimed.
+     */
+    public static Mono<Integer> settlement(Mono<Integer> batch) {
+        return span(SETTLEMENT, SettlementBatchEvent::new, batch, (event, payouts) -> event.payouts = payouts);
+    }
+
+    private static <E extends OutcomeEvent, T> Mono<T> span(EventType type, Supplier<E> factory, Mono<T> body,
+                                                           BiConsumer<E, T> onValue) {
+        if (!type.isEnabled()) {
+            return body;
+        }
+        return Mono.defer(() -> {
+            E event = factory.get();
+            event.begin();
+            return body
+                    .doOnNext(value -> {
+                        event.outcome = "success";
+                        if (onValue != null) {
+                            onValue.accept(event, value);
+                        }
+                    })
+                    .doOnError(error -> event.outcome = "error")
+                    .doFinally(signal -> {
+                        event.end();
+                        if (event.outcome == null) {
+                            event.outcome = signal == SignalType.CANCEL ? "cancelled" : "empty";
+                        }
+                        event.commit();
+                    });
+        });
+    }
+}
@@ -0,0 +1,185 @@
+package com.payment.profiling;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Controls a rolling Flight Recorder recording from {@code /actuator/flightrecorder}: a POST
+ * to {@code /start}, {@code /stop} or {@code /dump}, and a GET for its state. The recording
+ * uses the JDK's {@code payment.profiling.settings} configuration, {@code profile} by
+ * default, which samples allocations and execution, plus the payment service's own events, and
+ * keeps the last {@code payment.profiling.max-age} or {@code payment.profiling.max-size} of it
+ * on disk. A dump writes what the recording holds to {@code payment.profiling.directory},
+ * where {@link RecordingSummary} can read it, and leaves the recording running; only the newest
+ * {@code payment.profiling.max-dumps} dumps are kept there.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+
+    private static final String FILE_PREFIX = "payment-service-";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final String settings;
+    private final Duration maxAge;
+    private final DataSize maxSize;
+    private final boolean startOnBoot;
+    private final int maxDumps;
+    private Recording recording;
+
+    @Autowired
+    public FlightRecorderEndpoint(@Value("${payment.profiling.directory:flight-recordings}") Path directory,
+                                  @Value("${payment.profiling.settings:profile}") String settings,
+                                  @Value("${payment.profiling.max-age:30m}") Duration maxAge,
+                                  @Value("${payment.profiling.max-size:256MB}") DataSize maxSize,
+                                  @Value("${payment.profiling.start-on-boot:false}") boolean startOnBoot,
+                                  @Value("${payment.profiling.max-dumps:5}") int maxDumps) {
+        this.directory = directory;
+        this.settings = settings;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+        this.startOnBoot = startOnBoot;
+        this.maxDumps = maxDumps;
+    }
+
+    @PostConstruct
+    void startIfConfigured() {
+        if (startOnBoot) {
+            start();
+        }
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> state() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("state", recording != null ? recording.getState().name() : RecordingState.CLOSED.name());
+        state.put("settings", settings);
+        state.put("maxAge", maxAge.toString());
+        state.put("maxSize", maxSize.toString());
+        if (recording != null) {
+            state.put("startTime", String.valueOf(recording.getStartTime()));
+        }
+        return state;
+    }
+
+    @WriteOperation
+    public Map<String, Object> control(@Selector String action) {
+        return switch (action) {
+            case "start" -> start();
+            case "stop" -> stop();
+            case "dump" -> Map.of("file", dump().toString());
+            default -> throw new InvalidEndpointRequestException("Unknown action " + action,
+                    "Expected start, stop or dump");
+        };
+    }
+
+    public synchronized Map<String, Object> start() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            try {
+                Recording started = new Recording(Configuration.getConfiguration(settings));
+                started.setName("payment-service");
+                started.setToDisk(true);
+                started.setMaxAge(maxAge);
+                started.setMaxSize(maxSize.toBytes());
+                started.start();
+                close();
+                recording = started;
+                log.info("Started flight recording with settings {}", settings);
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("Could not load flight recorder settings " + settings, e);
+            }
+        }
+        return state();
+    }
+
+    /**
+     * Dumps what the recording holds, then discards it.
+     */
+    public synchronized Map<String, Object> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            return state();
+        }
+        Path file = dump();
+        close();
+        log.info("Stopped flight recording, last dump at {}", file);
+        Map<String, Object> state = state();
+        state.put("file", file.toString());
+        return state;
+    }
+
+    public synchronized Path dump() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new InvalidEndpointRequestException("No flight recording is running", "Start a recording first");
+        }
+        try {
+            Files.createDirectories(directory);
+            Path file = newDumpFile();
+            recording.dump(file);
+            log.info("Dumped flight recording to {}", file);
+            deleteOldDumps();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The fixed-width sequence keeps dumps taken within the same millisecond apart and in order
+    private Path newDumpFile() {
+        String time = LocalDateTime.now().format(FILE_TIME);
+        for (int sequence = 0; ; sequence++) {
+            Path file = directory.resolve(FILE_PREFIX + time + String.format("-%03d.jfr", sequence));
+            if (Files.notExists(file)) {
+                return file;
+            }
+        }
+    }
+
+    // Names sort by dump time, so the oldest come first
+    private void deleteOldDumps() throws IOException {
+        List<Path> dumps;
+        try (Stream<Path> files = Files.list(directory)) {
+            dumps = files.filter(path -> path.getFileName().toString().startsWith(FILE_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path old : dumps.subList(0, Math.max(0, dumps.size() - maxDumps))) {
+            Files.deleteIfExists(old);
+            log.info("Deleted old flight recording {}", old);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.payment.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.payment.KafkaPublish")
+@Label("Kafka Publish")
+@Category({"Payment Service", "Kafka"})
+@Description("One record sent to Kafka, until the broker acknowledged it")
+@StackTrace(false)
+class KafkaPublishEvent extends OutcomeEvent {
+
+    @Label("Topic")
+    String topic;
+
+    @Label("Event Type")
+    String eventType;
+
+    @Label("Payload Size")
+    @DataAmount
+    int payloadSize;
+}
@@ -0,0 +1,14 @@
+package com.payment.profiling;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Fields shared by the events that span a reactive call, from subscription to its terminal
+ * signal. {@code outcome} is {@code success}, {@code empty}, {@code error} or {@code cancelled}.
+ */
+abstract class OutcomeEvent extends Event {
+
+    @Label("Outcome")
+    String outcome;
+}
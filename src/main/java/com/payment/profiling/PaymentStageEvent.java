@@ -0,0 +1,30 @@
+package com.payment.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.payment.PaymentStage")
+@Label("Payment Stage")
+@Category({"Payment Service", "Payments"})
+@Description("One stage of payment initiation, verification or payout")
+@StackTrace(false)
+public class PaymentStageEvent extends OutcomeEvent {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Provider")
+    String provider;
+
+    @Label("Cache Tier")
+    String cacheTier;
+
+    @Label("Payment Id")
+    String paymentId;
+}
@@ -0,0 +1,131 @@
+package com.payment.profiling;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarizes a recording dumped by {@link FlightRecorderEndpoint}: latency percentiles of the
+ * payment service's events per stage, Redis command, Kafka topic and settlement batch, and the
+ * code of this service that allocated the most, by allocation samples attributed to the
+ * nearest {@code com.payment} frame. Needs only the JDK, so it also runs from source:
+ *
+ * <pre>
+ * java src/main/java/com/payment/profiling/RecordingSummary.java payment-service.jfr [sites]
+ * </pre>
+ */
+public final class RecordingSummary {
+
+    private static final String APPLICATION_PACKAGE = "com.payment.";
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, LongList> latencies = new TreeMap<>();
+    private final Map<String, long[]> allocations = new HashMap<>();
+
+    private RecordingSummary() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RecordingSummary <recording.jfr> [allocation sites to list, default 20]");
+            System.exit(2);
+        }
+        RecordingSummary summary = new RecordingSummary();
+        try (RecordingFile file = new RecordingFile(Path.of(args[0]))) {
+            while (file.hasMoreEvents()) {
+                summary.add(file.readEvent());
+            }
+        }
+        summary.print(System.out, args.length > 1 ? Integer.parseInt(args[1]) : 20);
+    }
+
+    private void add(RecordedEvent event) {
+        String key = switch (event.getEventType().getName()) {
+            case "com.payment.PaymentStage" -> "stage    " + event.getString("operation") + "/" + event.getString("stage")
+                    + " " + event.getString("outcome");
+            case "com.payment.RedisCall" -> "redis    " + event.getString("command") + " " + event.getString("keyspace");
+            case "com.payment.KafkaPublish" -> "kafka    " + event.getString("topic") + " " + event.getString("outcome");
+            case "com.payment.SettlementBatch" -> "settle   batch " + event.getString("outcome");
+            case "jdk.ObjectAllocationSample" -> {
+                addAllocation(event);
+                yield null;
+            }
+            default -> null;
+        };
+        if (key != null) {
+            latencies.computeIfAbsent(key, k -> new LongList()).add(event.getDuration().toNanos());
+        }
+    }
+
+    private void addAllocation(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(APPLICATION_PACKAGE) && !type.startsWith(RecordingSummary.class.getPackageName())) {
+                String site = type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber()
+                        + " " + event.getClass("objectClass").getName();
+                long[] total = allocations.computeIfAbsent(site, k -> new long[2]);
+                total[0] += event.getLong("weight");
+                total[1]++;
+                return;
+            }
+        }
+    }
+
+    private void print(PrintStream out, int sites) {
+        out.printf("%-60s %8s %10s %10s %10s %10s %10s%n", "event", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, LongList> entry : latencies.entrySet()) {
+            long[] sorted = entry.getValue().sorted();
+            out.printf("%-60s %8d", entry.getKey(), sorted.length);
+            for (double percentile : PERCENTILES) {
+                out.printf(" %10.3f", millis(sorted[(int) Math.ceil(percentile * sorted.length) - 1]));
+            }
+            out.printf(" %10.3f%n", millis(sorted[sorted.length - 1]));
+        }
+
+        List<Map.Entry<String, long[]>> bySize = new ArrayList<>(allocations.entrySet());
+        bySize.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        out.println();
+        out.printf("%-100s %12s %8s%n", "allocation site and class", "sampled MB", "samples");
+        for (Map.Entry<String, long[]> entry : bySize.subList(0, Math.min(sites, bySize.size()))) {
+            out.printf("%-100s %12.1f %8d%n", entry.getKey(), entry.getValue()[0] / 1048576.0, entry.getValue()[1]);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // Durations of one event key, unboxed
+    private static final class LongList {
+
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
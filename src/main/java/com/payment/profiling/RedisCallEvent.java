@@ -0,0 +1,21 @@
+package com.payment.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.payment.RedisCall")
+@Label("Redis Call")
+@Category({"Payment Service", "Redis"})
+@Description("One Redis command, until its reply arrived")
+@StackTrace(false)
+class RedisCallEvent extends OutcomeEvent {
+
+    @Label("Command")
+    String command;
+
+    @Label("Keyspace")
+    String keyspace;
+}
@@ -0,0 +1,18 @@
+package com.payment.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.payment.SettlementBatch")
+@Label("Settlement Batch")
+@Category({"Payment Service", "Payouts"})
+@Description("One settlement batch: claimed, written to bank files and marked")
+@StackTrace(false)
+class SettlementBatchEvent extends OutcomeEvent {
+
+    @Label("Payouts")
+    int payouts;
+}
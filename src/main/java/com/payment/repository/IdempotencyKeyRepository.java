@@ -1,12 +1,27 @@
 package com.payment.repository;
 
 import com.payment.entity.IdempotencyKey;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Mono;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Repository
 public interface IdempotencyKeyRepository extends R2dbcRepository<IdempotencyKey, UUID> {
     Mono<IdempotencyKey> findByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Deletes up to {@code limit} of the keys that expired before {@code now}, oldest first
+     * along {@code idx_idempotency_keys_expires_at}, skipping rows another transaction holds.
+     */
+    @Modifying
+    @Query("DELETE FROM idempotency_keys WHERE id IN (SELECT id FROM idempotency_keys WHERE expires_at < $1 "
+            + "ORDER BY expires_at LIMIT $2 FOR UPDATE SKIP LOCKED)")
+    Mono<Integer> deleteExpired(LocalDateTime now, int limit);
+
+    @Query("SELECT pg_try_advisory_xact_lock($1)")
+    Mono<Boolean> tryAdvisoryTransactionLock(long key);
 }
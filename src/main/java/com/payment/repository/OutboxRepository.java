@@ -0,0 +1,23 @@
+package com.payment.repository;
+
+import com.payment.entity.OutboxEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface OutboxRepository extends R2dbcRepository<OutboxEvent, Long>, OutboxRepositoryCustom {
+
+    @Query("SELECT * FROM outbox ORDER BY id LIMIT $1 FOR UPDATE SKIP LOCKED")
+    Flux<OutboxEvent> lockNextBatch(int limit);
+
+    @Modifying
+    @Query("DELETE FROM outbox WHERE id = ANY($1)")
+    Mono<Integer> deleteByIds(Long[] ids);
+
+    @Query("SELECT pg_try_advisory_xact_lock($1)")
+    Mono<Boolean> tryAdvisoryTransactionLock(long key);
+}
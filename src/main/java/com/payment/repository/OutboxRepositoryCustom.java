@@ -0,0 +1,14 @@
+package com.payment.repository;
+
+import com.payment.entity.OutboxEvent;
+import reactor.core.publisher.Mono;
+import java.util.List;
+
+public interface OutboxRepositoryCustom {
+
+    /**
+     * Inserts all events with multi-row INSERTs, as few as the bind parameter limit allows,
+     * returning how many rows were inserted. Ids are left to the sequence and not read back.
+     */
+    Mono<Integer> insertAll(List<OutboxEvent> events);
+}
@@ -0,0 +1,66 @@
+package com.payment.repository;
+
+import com.payment.entity.OutboxEvent;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class OutboxRepositoryCustomImpl implements OutboxRepositoryCustom {
+
+    private static final String INSERT_PREFIX = "INSERT INTO outbox (aggregate_id, topic, message_key, event_type, "
+            + "content_type, payload, created_at) VALUES ";
+    private static final int COLUMNS = 7;
+    // Postgres numbers bind parameters with a 16-bit count
+    private static final int MAX_ROWS = 65535 / COLUMNS;
+
+    private final DatabaseClient databaseClient;
+
+    OutboxRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Integer> insertAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0);
+        }
+        return Flux.range(0, (events.size() + MAX_ROWS - 1) / MAX_ROWS)
+                .concatMap(chunk -> insert(events.subList(chunk * MAX_ROWS, Math.min(events.size(), (chunk + 1) * MAX_ROWS))))
+                .reduce(0, Integer::sum);
+    }
+
+    private Mono<Integer> insert(List<OutboxEvent> events) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + events.size() * COLUMNS * 5);
+        sql.append(INSERT_PREFIX);
+        for (int row = 0; row < events.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 1; column <= COLUMNS; column++) {
+                sql.append(column == 1 ? "$" : ", $").append(row * COLUMNS + column);
+            }
+            sql.append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        int index = 0;
+        for (OutboxEvent event : events) {
+            spec = bind(spec, index++, event.getAggregateId(), String.class);
+            spec = bind(spec, index++, event.getTopic(), String.class);
+            spec = bind(spec, index++, event.getMessageKey(), String.class);
+            spec = bind(spec, index++, event.getEventType(), String.class);
+            spec = bind(spec, index++, event.getContentType(), String.class);
+            spec = bind(spec, index++, event.getPayload(), byte[].class);
+            spec = bind(spec, index++, event.getCreatedAt() != null ? event.getCreatedAt() : LocalDateTime.now(),
+                    LocalDateTime.class);
+        }
+
+        return spec.fetch()
+                .rowsUpdated()
+                .map(Long::intValue);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, int index, Object value, Class<?> type) {
+        return value != null ? spec.bind(index, value) : spec.bindNull(index, type);
+    }
+}
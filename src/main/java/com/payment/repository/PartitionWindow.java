@@ -0,0 +1,75 @@
+package com.payment.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * {@code payments} and {@code payouts} are partitioned by month of {@code created_at} and keyed
+ * by version 7 UUIDs, which start with the Unix millisecond they were generated at. Lookups by
+ * id bound {@code created_at} to a window around that millisecond, so Postgres prunes every
+ * partition the row cannot be in instead of probing each partition's primary key.
+ *
+ * <p>The window reaches two days either side of the id's time, wider than any difference
+ * between the clock and time zone of whoever generated the id and whoever wrote
+ * {@code created_at}. Ids of other versions, written before partitioning, get a window
+ * spanning all partitions.
+ */
+public final class PartitionWindow {
+
+    static final LocalDateTime ALL_FROM = LocalDateTime.of(1970, 1, 1, 0, 0);
+    static final LocalDateTime ALL_UNTIL = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private static final Duration SLACK = Duration.ofDays(2);
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private PartitionWindow() {
+    }
+
+    /**
+     * A version 7 UUID for now, with the same 74 random bits as {@link UUID#randomUUID()}.
+     */
+    public static UUID newId() {
+        UUID random = UUID.randomUUID();
+        long mostSignificant = System.currentTimeMillis() << 16 | 0x7000L | random.getMostSignificantBits() & 0x0FFFL;
+        return new UUID(mostSignificant, random.getLeastSignificantBits());
+    }
+
+    public static LocalDateTime from(UUID id) {
+        Instant created = createdAt(id);
+        return created != null ? LocalDateTime.ofInstant(created.minus(SLACK), ZONE) : ALL_FROM;
+    }
+
+    public static LocalDateTime until(UUID id) {
+        Instant created = createdAt(id);
+        return created != null ? LocalDateTime.ofInstant(created.plus(SLACK), ZONE) : ALL_UNTIL;
+    }
+
+    public static LocalDateTime from(UUID[] ids) {
+        LocalDateTime from = ALL_UNTIL;
+        for (UUID id : ids) {
+            LocalDateTime bound = from(id);
+            if (bound.isBefore(from)) {
+                from = bound;
+            }
+        }
+        return from;
+    }
+
+    public static LocalDateTime until(UUID[] ids) {
+        LocalDateTime until = ALL_FROM;
+        for (UUID id : ids) {
+            LocalDateTime bound = until(id);
+            if (bound.isAfter(until)) {
+                until = bound;
+            }
+        }
+        return until;
+    }
+
+    private static Instant createdAt(UUID id) {
+        return id.version() == 7 ? Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16) : null;
+    }
+}
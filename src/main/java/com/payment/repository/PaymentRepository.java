@@ -1,17 +1,101 @@
 package com.payment.repository;
 
+import com.payment.dto.StatusView;
 import com.payment.entity.Payment;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
+/**
+ * Lookups by id pass the {@link PartitionWindow} of their ids, so only the partitions the rows
+ * can be in are read. A provider order id carries no time, so its lookup is bounded by how far
+ * back the caller still verifies orders instead.
+ *
+ * <p>Two queries read every partition by design: {@link #findUnpaidByLabourId}, since an unpaid
+ * payment may be of any age, and {@link #findLatestByJobId}. Both probe a per-partition index
+ * led by the filtered column, so a partition without matching rows costs one index descent.
+ */
 @Repository
-public interface PaymentRepository extends R2dbcRepository<Payment, UUID> {
+public interface PaymentRepository extends R2dbcRepository<Payment, UUID>, PaymentRepositoryCustom {
 
-    Mono<Payment> findByProviderOrderId(String providerOrderId);
+    // Successful payments no payout, single or aggregated, has paid yet
+    String UNPAID = "SELECT p.* FROM payments p WHERE p.status = 'SUCCESS' "
+            + "AND NOT EXISTS (SELECT 1 FROM payouts o WHERE o.payment_id = p.id) "
+            + "AND NOT EXISTS (SELECT 1 FROM payout_items i WHERE i.payment_id = p.id) ";
+
+    @Query("SELECT id FROM payments WHERE provider_order_id = $1 AND created_at >= $2")
+    Mono<UUID> findIdByProviderOrderId(String providerOrderId, LocalDateTime from);
+
+    default Mono<Payment> lookup(UUID id) {
+        return lookup(id, PartitionWindow.from(id), PartitionWindow.until(id));
+    }
+
+    @Query("SELECT * FROM payments WHERE id = $1 AND created_at >= $2 AND created_at < $3")
+    Mono<Payment> lookup(UUID id, LocalDateTime from, LocalDateTime until);
+
+    default Mono<String> findStatusById(UUID id) {
+        return findStatusById(id, PartitionWindow.from(id), PartitionWindow.until(id));
+    }
+
+    @Query("SELECT status FROM payments WHERE id = $1 AND created_at >= $2 AND created_at < $3")
+    Mono<String> findStatusById(UUID id, LocalDateTime from, LocalDateTime until);
+
+    /**
+     * Sets the status unless it already is {@code status}, returning the columns events need.
+     * Empty when the payment does not exist or nothing changed.
+     */
+    default Mono<Payment> updateStatusIfChanged(UUID id, String status, LocalDateTime updatedAt) {
+        return updateStatusIfChanged(id, status, updatedAt, PartitionWindow.from(id), PartitionWindow.until(id));
+    }
+
+    @Query("UPDATE payments SET status = $2, updated_at = $3 WHERE id = $1 AND status <> $2 "
+            + "AND created_at >= $4 AND created_at < $5 "
+            + "RETURNING id, job_id, user_id, labour_id, amount, currency, provider_order_id, status, created_at, updated_at")
+    Mono<Payment> updateStatusIfChanged(UUID id, String status, LocalDateTime updatedAt, LocalDateTime from, LocalDateTime until);
 
     @Query("SELECT * FROM payments WHERE job_id = $1 ORDER BY created_at DESC LIMIT 1")
     Mono<Payment> findLatestByJobId(UUID jobId);
+
+    // Keyset pages, newest first, of the rows strictly before (createdAt, id). The plain
+    // created_at bound lets Postgres prune the partitions after the cursor.
+    @Query("SELECT * FROM payments WHERE user_id = $1 AND created_at <= $2 AND (created_at, id) < ($2, $3) "
+            + "ORDER BY created_at DESC, id DESC LIMIT $4")
+    Flux<Payment> findPageByUserId(UUID userId, LocalDateTime createdAt, UUID id, int limit);
+
+    @Query("SELECT * FROM payments WHERE job_id = $1 AND created_at <= $2 AND (created_at, id) < ($2, $3) "
+            + "ORDER BY created_at DESC, id DESC LIMIT $4")
+    Flux<Payment> findPageByJobId(UUID jobId, LocalDateTime createdAt, UUID id, int limit);
+
+    @Query(UNPAID + "AND p.labour_id = $1 ORDER BY p.created_at LIMIT $2")
+    Flux<Payment> findUnpaidByLabourId(UUID labourId, int limit);
+
+    /**
+     * Locks the payments of {@code ids} until the transaction ends, then returns those still
+     * unpaid. The check is a statement of its own after the lock, so it sees the payout of
+     * whichever transaction held the lock before; a locking read would keep its earlier view.
+     */
+    default Flux<Payment> lockUnpaidByIds(UUID[] ids) {
+        LocalDateTime from = PartitionWindow.from(ids);
+        LocalDateTime until = PartitionWindow.until(ids);
+        return lockByIds(ids, from, until)
+                .thenMany(findUnpaidByIds(ids, from, until));
+    }
+
+    // In id order, so transactions locking overlapping sets cannot deadlock
+    @Query("SELECT id FROM payments WHERE id = ANY($1) AND created_at >= $2 AND created_at < $3 ORDER BY id FOR UPDATE")
+    Flux<UUID> lockByIds(UUID[] ids, LocalDateTime from, LocalDateTime until);
+
+    @Query(UNPAID + "AND p.id = ANY($1) AND p.created_at >= $2 AND p.created_at < $3 ORDER BY p.created_at")
+    Flux<Payment> findUnpaidByIds(UUID[] ids, LocalDateTime from, LocalDateTime until);
+
+    default Flux<StatusView> findStatusesByIds(UUID[] ids) {
+        return findStatusesByIds(ids, PartitionWindow.from(ids), PartitionWindow.until(ids));
+    }
+
+    @Query("SELECT id, status FROM payments WHERE id = ANY($1) AND created_at >= $2 AND created_at < $3")
+    Flux<StatusView> findStatusesByIds(UUID[] ids, LocalDateTime from, LocalDateTime until);
 }
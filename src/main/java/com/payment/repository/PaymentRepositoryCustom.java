@@ -0,0 +1,14 @@
+package com.payment.repository;
+
+import com.payment.entity.Payment;
+import reactor.core.publisher.Flux;
+import java.util.List;
+
+public interface PaymentRepositoryCustom {
+
+    /**
+     * Inserts all payments with a single multi-row INSERT. Ids are assigned client-side
+     * when missing, so the returned entities are the same instances that were passed in.
+     */
+    Flux<Payment> insertAll(List<Payment> payments);
+}
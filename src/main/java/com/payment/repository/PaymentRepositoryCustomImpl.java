@@ -0,0 +1,67 @@
+package com.payment.repository;
+
+import com.payment.entity.Payment;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+class PaymentRepositoryCustomImpl implements PaymentRepositoryCustom {
+
+    private static final String INSERT_PREFIX = "INSERT INTO payments (id, job_id, user_id, labour_id, amount, currency, "
+            + "payment_method, payment_provider, provider_order_id, status, created_at, updated_at) VALUES ";
+    private static final int COLUMNS = 12;
+
+    private final DatabaseClient databaseClient;
+
+    PaymentRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Flux<Payment> insertAll(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return Flux.empty();
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + payments.size() * COLUMNS * 5);
+        sql.append(INSERT_PREFIX);
+        for (int row = 0; row < payments.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 1; column <= COLUMNS; column++) {
+                sql.append(column == 1 ? "$" : ", $").append(row * COLUMNS + column);
+            }
+            sql.append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        int index = 0;
+        for (Payment payment : payments) {
+            if (payment.getId() == null) {
+                payment.setId(PartitionWindow.newId());
+            }
+            spec = bind(spec, index++, payment.getId(), UUID.class);
+            spec = bind(spec, index++, payment.getJobId(), UUID.class);
+            spec = bind(spec, index++, payment.getUserId(), UUID.class);
+            spec = bind(spec, index++, payment.getLabourId(), UUID.class);
+            spec = bind(spec, index++, payment.getAmount() != null ? payment.getAmount().toBigDecimal() : null, BigDecimal.class);
+            spec = bind(spec, index++, payment.getCurrency(), String.class);
+            spec = bind(spec, index++, payment.getPaymentMethod(), String.class);
+            spec = bind(spec, index++, payment.getPaymentProvider(), String.class);
+            spec = bind(spec, index++, payment.getProviderOrderId(), String.class);
+            spec = bind(spec, index++, payment.getStatus(), String.class);
+            spec = bind(spec, index++, payment.getCreatedAt(), LocalDateTime.class);
+            spec = bind(spec, index++, payment.getUpdatedAt(), LocalDateTime.class);
+        }
+
+        return spec.fetch()
+                .rowsUpdated()
+                .thenMany(Flux.fromIterable(payments));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, int index, Object value, Class<?> type) {
+        return value != null ? spec.bind(index, value) : spec.bindNull(index, type);
+    }
+}
@@ -1,13 +1,76 @@
 package com.payment.repository;
 
+import com.payment.dto.StatusView;
 import com.payment.entity.Payout;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
+/**
+ * Lookups by id pass the {@link PartitionWindow} of their ids, so only the partitions the rows
+ * can be in are read; lookups by payment id skip the partitions older than the payment.
+ * {@link #lockPendingBatch} reads every partition, as a payout stays pending until it settles
+ * however old it is, but only through the partial index of pending payouts, which is empty in
+ * settled partitions.
+ */
 @Repository
 public interface PayoutRepository extends R2dbcRepository<Payout, UUID> {
 
-    Mono<Payout> findByPaymentId(UUID paymentId);
+    default Mono<Payout> findByPaymentId(UUID paymentId) {
+        return findByPaymentId(paymentId, PartitionWindow.from(paymentId));
+    }
+
+    @Query("SELECT * FROM payouts WHERE payment_id = $1 AND created_at >= $2")
+    Mono<Payout> findByPaymentId(UUID paymentId, LocalDateTime from);
+
+    // Keyset page, newest first, of the rows strictly before (createdAt, id)
+    @Query("SELECT * FROM payouts WHERE labour_id = $1 AND created_at <= $2 AND (created_at, id) < ($2, $3) "
+            + "ORDER BY created_at DESC, id DESC LIMIT $4")
+    Flux<Payout> findPageByLabourId(UUID labourId, LocalDateTime createdAt, UUID id, int limit);
+
+    default Mono<Boolean> isPaymentPaidOut(UUID paymentId) {
+        return isPaymentPaidOut(paymentId, PartitionWindow.from(paymentId));
+    }
+
+    @Query("SELECT EXISTS (SELECT 1 FROM payouts WHERE payment_id = $1 AND created_at >= $2) "
+            + "OR EXISTS (SELECT 1 FROM payout_items WHERE payment_id = $1)")
+    Mono<Boolean> isPaymentPaidOut(UUID paymentId, LocalDateTime from);
+
+    @Modifying
+    @Query("INSERT INTO payout_items (payout_id, payment_id, amount, commission) "
+            + "SELECT $1, * FROM unnest($2::uuid[], $3::numeric[], $4::numeric[])")
+    Mono<Integer> insertItems(UUID payoutId, UUID[] paymentIds, BigDecimal[] amounts, BigDecimal[] commissions);
+
+    default Mono<String> findStatusById(UUID id) {
+        return findStatusById(id, PartitionWindow.from(id), PartitionWindow.until(id));
+    }
+
+    @Query("SELECT settlement_status FROM payouts WHERE id = $1 AND created_at >= $2 AND created_at < $3")
+    Mono<String> findStatusById(UUID id, LocalDateTime from, LocalDateTime until);
+
+    default Flux<StatusView> findStatusesByIds(UUID[] ids) {
+        return findStatusesByIds(ids, PartitionWindow.from(ids), PartitionWindow.until(ids));
+    }
+
+    @Query("SELECT id, settlement_status AS status FROM payouts WHERE id = ANY($1) AND created_at >= $2 AND created_at < $3")
+    Flux<StatusView> findStatusesByIds(UUID[] ids, LocalDateTime from, LocalDateTime until);
+
+    @Query("SELECT * FROM payouts WHERE settlement_status = 'PENDING' ORDER BY created_at LIMIT $1 FOR UPDATE SKIP LOCKED")
+    Flux<Payout> lockPendingBatch(int limit);
+
+    default Mono<Integer> updateSettlement(UUID[] ids, String status, String batchId, LocalDateTime updatedAt) {
+        return updateSettlement(ids, status, batchId, updatedAt, PartitionWindow.from(ids), PartitionWindow.until(ids));
+    }
+
+    @Modifying
+    @Query("UPDATE payouts SET settlement_status = $2, settlement_batch_id = $3, updated_at = $4 "
+            + "WHERE id = ANY($1) AND created_at >= $5 AND created_at < $6")
+    Mono<Integer> updateSettlement(UUID[] ids, String status, String batchId, LocalDateTime updatedAt,
+                                   LocalDateTime from, LocalDateTime until);
 }
@@ -0,0 +1,87 @@
+package com.payment.service;
+
+import com.payment.money.Money;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams an ASCII bank file through a memory-mapped window that slides forward as it
+ * fills, so a file of any size is written with a fixed amount of memory and no per-line
+ * system calls. The file is created new and truncated to what was written on close.
+ * Characters outside ASCII are written as {@code ?}; bank files are plain ASCII.
+ */
+final class BankFileWriter implements AutoCloseable {
+
+    private static final int WINDOW = 4 << 20;
+
+    private final StringBuilder scratch = new StringBuilder(24);
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    BankFileWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW);
+    }
+
+    BankFileWriter field(CharSequence value) throws IOException {
+        ensure(value.length() + 1);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // The separator inside a value would shift every later column
+            window.put(c < 0x80 && c != '|' ? (byte) c : (byte) '?');
+        }
+        window.put((byte) '|');
+        return this;
+    }
+
+    BankFileWriter field(long value) throws IOException {
+        scratch.setLength(0);
+        return field(scratch.append(value));
+    }
+
+    BankFileWriter field(Money amount) throws IOException {
+        scratch.setLength(0);
+        return field(amount.appendTo(scratch));
+    }
+
+    /**
+     * Ends the record, replacing the separator after its last field.
+     */
+    void endRecord() throws IOException {
+        if (window.position() > 0 && window.get(window.position() - 1) == '|') {
+            window.position(window.position() - 1);
+        }
+        ensure(1);
+        window.put((byte) '\n');
+    }
+
+    long size() {
+        return windowStart + window.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long size = size();
+            window.force();
+            channel.truncate(size);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return;
+        }
+        window.force();
+        windowStart += window.position();
+        window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW, bytes));
+    }
+}
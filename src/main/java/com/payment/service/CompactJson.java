@@ -0,0 +1,74 @@
+package com.payment.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * DEFLATE of small JSON documents against a preset dictionary of the names and values they
+ * repeat, which is what lets a response of a few hundred bytes shrink at all. The first byte
+ * names the dictionary, so it can change without rewriting what is stored.
+ */
+final class CompactJson {
+
+    private static final byte DICTIONARY_V1 = 1;
+    // Most frequent last, DEFLATE reaches the end of the dictionary with the shortest distances
+    private static final byte[] DICTIONARY = ("\"error\":null,\"idempotencyKey\":\"\",\"currency\":\"INR\",\"paymentLink\":\"https://\","
+            + "\"status\":\"FAILED\",\"status\":\"SUCCESS\",\"status\":\"PENDING\",\"createdAt\":\"202\","
+            + "\"amount\":\"\",\"labourId\":\"\",\"userId\":\"\",\"jobId\":\"\",{\"id\":\"")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private CompactJson() {
+    }
+
+    static byte[] compress(byte[] json) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(json);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 2 + 16);
+            out.write(DICTIONARY_V1);
+            byte[] buffer = new byte[Math.max(64, json.length)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code compressed} was not written by {@link #compress(byte[])}
+     */
+    static byte[] decompress(byte[] compressed) {
+        if (compressed.length == 0 || compressed[0] != DICTIONARY_V1) {
+            throw new IllegalArgumentException("Unknown compact JSON format");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, 1, compressed.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[Math.max(256, compressed.length * 4)];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated compact JSON");
+                    }
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compact JSON", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
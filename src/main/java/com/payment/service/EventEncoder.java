@@ -0,0 +1,60 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.entity.OutboxEvent;
+import com.payment.event.BinaryEventCodec;
+import com.payment.event.EventEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Encodes events for the topic they go to. Topics listed in {@code payment.kafka.binary-topics}
+ * get {@link BinaryEventCodec}, every other topic keeps JSON.
+ */
+@Service
+public class EventEncoder {
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> binaryTopics;
+
+    @Autowired
+    public EventEncoder(ObjectMapper objectMapper,
+                        @Value("${payment.kafka.binary-topics:}") Set<String> binaryTopics) {
+        this.objectMapper = objectMapper;
+        this.binaryTopics = Set.copyOf(binaryTopics);
+    }
+
+    public EventEncoding encodingFor(String topic) {
+        return binaryTopics.contains(topic) ? EventEncoding.BINARY : EventEncoding.JSON;
+    }
+
+    public byte[] encode(EventEncoding encoding, Object event) {
+        if (encoding == EventEncoding.BINARY) {
+            return BinaryEventCodec.encode(event);
+        }
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event is not serializable: " + event.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Builds the outbox row for {@code event}, encoded for {@code topic}. The caller sets the aggregate id.
+     */
+    public OutboxEvent outboxEvent(String topic, Object key, Object event) {
+        EventEncoding encoding = encodingFor(topic);
+        return OutboxEvent.builder()
+                .topic(topic)
+                .messageKey(key.toString())
+                .eventType(event.getClass().getSimpleName())
+                .contentType(encoding.contentType())
+                .payload(encode(encoding, event))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.payment.service;
+
+import com.payment.dto.HistoryCursor;
+import com.payment.entity.Payment;
+import com.payment.entity.Payout;
+import com.payment.repository.PaymentRepository;
+import com.payment.repository.PayoutRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Payment and payout history, newest first. A history is read as keyset pages of
+ * {@code payment.history.page-size} rows, each seeking past the {@code (created_at, id)} of
+ * the last row of the page before, so a page costs one index descent however deep the
+ * cursor is. The next page is only read once the client consumed the current one.
+ */
+@Service
+public class HistoryService {
+
+    private final PaymentRepository paymentRepository;
+    private final PayoutRepository payoutRepository;
+    private final int pageSize;
+    private final int maxLimit;
+
+    @Autowired
+    public HistoryService(PaymentRepository paymentRepository,
+                          PayoutRepository payoutRepository,
+                          @Value("${payment.history.page-size:500}") int pageSize,
+                          @Value("${payment.history.max-limit:100000}") int maxLimit) {
+        this.paymentRepository = paymentRepository;
+        this.payoutRepository = payoutRepository;
+        this.pageSize = pageSize;
+        this.maxLimit = maxLimit;
+    }
+
+    public Flux<Payment> paymentsByUser(UUID userId, HistoryCursor before, int limit) {
+        return pages(before, limit, (cursor, size) -> paymentRepository.findPageByUserId(userId, cursor.createdAt(), cursor.id(), size),
+                payment -> new HistoryCursor(payment.getCreatedAt(), payment.getId()));
+    }
+
+    public Flux<Payment> paymentsByJob(UUID jobId, HistoryCursor before, int limit) {
+        return pages(before, limit, (cursor, size) -> paymentRepository.findPageByJobId(jobId, cursor.createdAt(), cursor.id(), size),
+                payment -> new HistoryCursor(payment.getCreatedAt(), payment.getId()));
+    }
+
+    public Flux<Payout> payoutsByLabour(UUID labourId, HistoryCursor before, int limit) {
+        return pages(before, limit, (cursor, size) -> payoutRepository.findPageByLabourId(labourId, cursor.createdAt(), cursor.id(), size),
+                payout -> new HistoryCursor(payout.getCreatedAt(), payout.getId()));
+    }
+
+    private <T> Flux<T> pages(HistoryCursor before, int limit, PageQuery<T> query, Function<T, HistoryCursor> cursorOf) {
+        if (limit < 1 || limit > maxLimit) {
+            return Flux.error(new IllegalArgumentException("limit must be between 1 and " + maxLimit));
+        }
+        return Flux.defer(() -> {
+            AtomicLong remaining = new AtomicLong(limit);
+            Function<HistoryCursor, Mono<Page<T>>> page = cursor -> {
+                int size = (int) Math.min(pageSize, remaining.get());
+                return query.page(cursor, size)
+                        .collectList()
+                        .map(rows -> {
+                            // A short page is the end of the history
+                            boolean last = rows.size() < size || remaining.addAndGet(-rows.size()) == 0;
+                            return new Page<>(rows, last ? null : cursorOf.apply(rows.get(rows.size() - 1)));
+                        });
+            };
+            return page.apply(before)
+                    .expand(current -> current.next() != null ? page.apply(current.next()) : Mono.empty())
+                    // One page in flight, the next is read once this one is written out
+                    .flatMapIterable(Page::rows, 1);
+        });
+    }
+
+    private record Page<T>(List<T> rows, HistoryCursor next) {
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<T> {
+        Flux<T> page(HistoryCursor cursor, int size);
+    }
+}
@@ -0,0 +1,46 @@
+package com.payment.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * HMAC-SHA256 over one secret. Each thread keeps its own initialised {@link Mac}, so a
+ * signature check costs no key setup or provider lookup; {@code doFinal} resets it for reuse.
+ */
+public final class HmacSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> macs;
+
+    public HmacSigner(String secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    public byte[] sign(byte[]... parts) {
+        Mac mac = macs.get();
+        for (byte[] part : parts) {
+            mac.update(part);
+        }
+        return mac.doFinal();
+    }
+
+    /**
+     * Compares in constant time, so response timing does not leak how much of a forged signature matched.
+     */
+    public boolean matches(byte[] expected, byte[]... parts) {
+        return expected != null && MessageDigest.isEqual(expected, sign(parts));
+    }
+}
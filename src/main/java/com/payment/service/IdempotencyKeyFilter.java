@@ -0,0 +1,321 @@
+package com.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.BitFieldSubCommands.BitFieldType;
+import org.springframework.data.redis.connection.BitFieldSubCommands.Offset;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the idempotency keys recorded in the last
+ * {@link IdempotencyService#RESPONSE_TTL}, answering whether Postgres can hold a key at all.
+ * Keys are added to the bucket of the current {@code payment.idempotency.bloom.bucket} and a
+ * lookup checks every bucket still inside the TTL, so keys age out a bucket at a time.
+ *
+ * <p>Each bucket is a bit array in memory and a Redis bitmap {@code idempotency:bloom:<n>}.
+ * Adding a key sets its bits in both, in one {@code BITFIELD} command, before the key is
+ * written to Postgres; nodes merge the Redis bitmaps of the open buckets every
+ * {@code payment.idempotency.bloom.sync-interval-ms}. A key recorded on another node within
+ * that interval is only found through the Redis claim, which holds its response as long.
+ *
+ * <p>The filter only answers "absent" once it merged every live bucket from Redis and the
+ * bitmaps have existed for a whole TTL, tracked by {@code idempotency:bloom:since}. A new
+ * deployment, or a Redis that lost its data, takes the slow path for one TTL instead of
+ * trusting a filter that misses keys.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyFilter {
+
+    private static final String KEY_PREFIX = "idempotency:bloom:";
+    private static final String SINCE_KEY = KEY_PREFIX + "since";
+    private static final int WORDS_PER_READ = 512;
+    private static final double LN2 = Math.log(2);
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long bucketMillis;
+    private final int bits;
+    private final int hashes;
+    private final ConcurrentMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Counter absent;
+    private final Counter present;
+    private final Counter falsePositive;
+    // Lookups answer "absent" from then on, set by the first complete sync
+    private volatile long trustedFrom = Long.MAX_VALUE;
+
+    @Autowired
+    public IdempotencyKeyFilter(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${payment.idempotency.bloom.enabled:true}") boolean enabled,
+                                @Value("${payment.idempotency.bloom.expected-keys:1000000}") long expectedKeys,
+                                @Value("${payment.idempotency.bloom.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${payment.idempotency.bloom.bucket:1h}") Duration bucket) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.ttlMillis = IdempotencyService.RESPONSE_TTL.toMillis();
+        this.bucketMillis = bucket.toMillis();
+
+        // A lookup checks every live bucket, each gets its share of the false positive rate
+        long liveBuckets = ttlMillis / bucketMillis + 2;
+        long keysPerBucket = Math.max(1, expectedKeys * bucketMillis / ttlMillis);
+        double bucketRate = falsePositiveRate / liveBuckets;
+        long optimalBits = (long) Math.ceil(-keysPerBucket * Math.log(bucketRate) / (LN2 * LN2));
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63, (optimalBits + 63) / 64 * 64);
+        this.hashes = (int) Math.max(1, Math.round((double) bits / keysPerBucket * LN2));
+
+        this.absent = counter(meterRegistry, "absent");
+        this.present = counter(meterRegistry, "present");
+        this.falsePositive = counter(meterRegistry, "false_positive");
+        Gauge.builder("payment.idempotency.bloom.false_positive_rate", this, IdempotencyKeyFilter::estimatedFalsePositiveRate)
+                .description("False positive rate expected from how full the live buckets are")
+                .tag("source", "estimated")
+                .register(meterRegistry);
+        Gauge.builder("payment.idempotency.bloom.false_positive_rate", this, IdempotencyKeyFilter::observedFalsePositiveRate)
+                .description("Share of new keys the filter sent to Postgres anyway")
+                .tag("source", "observed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * False only if the key was never recorded within the TTL.
+     */
+    public boolean mightContain(String key) {
+        long now = System.currentTimeMillis();
+        if (!enabled || now < trustedFrom) {
+            return true;
+        }
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (long index = bucketIndex(now - ttlMillis); index <= bucketIndex(now); index++) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.mightContain(h1, h2)) {
+                present.increment();
+                return true;
+            }
+        }
+        absent.increment();
+        return false;
+    }
+
+    /**
+     * Counts a key the filter let through that Postgres did not have.
+     */
+    public void recordFalsePositive() {
+        if (enabled && System.currentTimeMillis() >= trustedFrom) {
+            falsePositive.increment();
+        }
+    }
+
+    /**
+     * Adds the key here and to the Redis bitmap, completing once Redis has it.
+     */
+    public Mono<Void> add(String key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        long index = bucketIndex(System.currentTimeMillis());
+        Bucket bucket = bucket(index);
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (int i = 0; i < hashes; i++) {
+            long bit = bucket.set(h1, h2, i);
+            commands = commands.set(BitFieldType.unsigned(1)).valueAt(bit).to(1);
+        }
+        String redisKey = KEY_PREFIX + index;
+        Mono<Void> write = redisTemplate.opsForValue().bitField(redisKey, commands).then();
+        // The bitmap has to outlive the bucket by a little, once per bucket and node is enough
+        return bucket.expirySet.compareAndSet(false, true)
+                ? write.then(redisTemplate.expire(redisKey, Duration.ofMillis(ttlMillis + 2 * bucketMillis)))
+                        .doOnError(error -> bucket.expirySet.set(false))
+                        .then()
+                : write;
+    }
+
+    /**
+     * Merges the live buckets from Redis, drops the expired ones and, on the first run,
+     * decides from when lookups can be trusted.
+     */
+    @Scheduled(fixedDelayString = "${payment.idempotency.bloom.sync-interval-ms:1000}")
+    public Mono<Void> sync() {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        long now = System.currentTimeMillis();
+        long oldest = bucketIndex(now - ttlMillis);
+        long current = bucketIndex(now);
+        buckets.keySet().removeIf(index -> index < oldest);
+
+        Mono<Void> merge = Flux.range(0, (int) (current - oldest + 1))
+                .map(offset -> oldest + offset)
+                .filter(index -> !bucket(index).complete)
+                .concatMap(index -> pull(index)
+                        // Writers can lag the bucket boundary, the bucket before the current one stays open
+                        .doOnSuccess(done -> bucket(index).complete = index < current - 1))
+                .then();
+        return merge
+                .then(trustedFrom == Long.MAX_VALUE ? since(now) : Mono.empty())
+                .onErrorResume(error -> {
+                    log.warn("Idempotency key filter sync failed: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    double estimatedFalsePositiveRate() {
+        double none = 1;
+        for (Bucket bucket : buckets.values()) {
+            none *= 1 - Math.pow((double) bucket.bitCount() / bits, hashes);
+        }
+        return 1 - none;
+    }
+
+    double observedFalsePositiveRate() {
+        double negatives = absent.count() + falsePositive.count();
+        return negatives == 0 ? 0 : falsePositive.count() / negatives;
+    }
+
+    private Mono<Void> since(long now) {
+        return redisTemplate.opsForValue().setIfAbsent(SINCE_KEY, Long.toString(now))
+                .then(redisTemplate.opsForValue().get(SINCE_KEY))
+                .doOnNext(since -> {
+                    trustedFrom = Long.parseLong(since) + ttlMillis;
+                    if (trustedFrom > now) {
+                        log.info("Idempotency key filter answers lookups from {}, one TTL after its bitmaps began",
+                                Instant.ofEpochMilli(trustedFrom));
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> pull(long index) {
+        Bucket bucket = bucket(index);
+        int words = bits / 64;
+        return Flux.range(0, (words + WORDS_PER_READ - 1) / WORDS_PER_READ)
+                .concatMap(chunk -> {
+                    int first = chunk * WORDS_PER_READ;
+                    int last = Math.min(words, first + WORDS_PER_READ);
+                    BitFieldSubCommands commands = BitFieldSubCommands.create();
+                    for (int word = first; word < last; word++) {
+                        commands = commands.get(BitFieldType.signed(64)).valueAt(Offset.offset(word).multipliedByTypeLength());
+                    }
+                    return redisTemplate.opsForValue().bitField(KEY_PREFIX + index, commands)
+                            .doOnNext(values -> bucket.merge(first, values));
+                })
+                .then();
+    }
+
+    private Bucket bucket(long index) {
+        return buckets.computeIfAbsent(index, i -> new Bucket(bits, hashes));
+    }
+
+    private long bucketIndex(long epochMillis) {
+        return epochMillis / bucketMillis;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("payment.idempotency.bloom")
+                .description("Idempotency key filter lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // FNV-1a over the UTF-16 code units, finished with a 64 bit mixer
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    /**
+     * Bits in Redis order: bit {@code n} is the most significant bit of word {@code n / 64}
+     * minus {@code n % 64}, matching {@code BITFIELD GET i64}.
+     */
+    private static final class Bucket {
+
+        private final AtomicLongArray words;
+        private final int bits;
+        private final int hashes;
+        private final AtomicBoolean expirySet = new AtomicBoolean();
+        // Closed and fully merged, no need to read it from Redis again
+        private volatile boolean complete;
+
+        Bucket(int bits, int hashes) {
+            this.words = new AtomicLongArray(bits / 64);
+            this.bits = bits;
+            this.hashes = hashes;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = bit(h1, h2, i);
+                if ((words.get((int) (bit >>> 6)) & mask(bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long set(long h1, long h2, int i) {
+            long bit = bit(h1, h2, i);
+            long mask = mask(bit);
+            int word = (int) (bit >>> 6);
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (a, b) -> a | b);
+            }
+            return bit;
+        }
+
+        void merge(int firstWord, List<Long> values) {
+            for (int i = 0; i < values.size(); i++) {
+                Long value = values.get(i);
+                if (value != null && value != 0 && (words.get(firstWord + i) | value) != words.get(firstWord + i)) {
+                    words.getAndAccumulate(firstWord + i, value, (a, b) -> a | b);
+                }
+            }
+        }
+
+        long bitCount() {
+            long count = 0;
+            for (int i = 0; i < words.length(); i++) {
+                count += Long.bitCount(words.get(i));
+            }
+            return count;
+        }
+
+        private long bit(long h1, long h2, int i) {
+            return ((h1 + i * h2) >>> 1) % bits;
+        }
+
+        private static long mask(long bit) {
+            return 1L << (63 - (bit & 63));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.payment.service;
+
+import com.payment.repository.IdempotencyKeyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Deletes expired {@code idempotency_keys} rows, so the table holds about one
+ * {@link IdempotencyService#RESPONSE_TTL} of keys. Rows go in chunks of
+ * {@code payment.idempotency.sweep.chunk-size}, oldest expiry first, each in its own short
+ * transaction with {@code payment.idempotency.sweep.pause} between chunks, which leaves
+ * autovacuum room to keep up instead of facing one large delete. A transaction-scoped
+ * advisory lock per chunk keeps the sweep on one node at a time.
+ */
+@Slf4j
+@Service
+public class IdempotencyKeySweeper {
+
+    private static final long SWEEP_LOCK_KEY = 0x69646b7377L;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final int chunkSize;
+    private final Duration pause;
+    private final int maxChunks;
+
+    @Autowired
+    public IdempotencyKeySweeper(IdempotencyKeyRepository idempotencyKeyRepository,
+                                 TransactionalOperator transactionalOperator,
+                                 @Value("${payment.idempotency.sweep.chunk-size:1000}") int chunkSize,
+                                 @Value("${payment.idempotency.sweep.pause:200ms}") Duration pause,
+                                 @Value("${payment.idempotency.sweep.max-chunks:500}") int maxChunks) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.maxChunks = maxChunks;
+    }
+
+    /**
+     * Sweeps until a chunk is short or {@code payment.idempotency.sweep.max-chunks} chunks
+     * were deleted. The next run starts {@code payment.idempotency.sweep.interval-ms} after
+     * this one completed.
+     */
+    @Scheduled(fixedDelayString = "${payment.idempotency.sweep.interval-ms:60000}")
+    public Mono<Void> sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        return sweepChunk(now)
+                .expand(deleted -> deleted == chunkSize ? Mono.delay(pause).then(sweepChunk(now)) : Mono.empty())
+                .take(maxChunks)
+                .reduce(0L, Long::sum)
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        log.info("Deleted {} expired idempotency keys", deleted);
+                    }
+                })
+                .onErrorResume(error -> {
+                    log.error("Idempotency key sweep failed, retrying on the next run", error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Deletes one chunk, returning how many rows it deleted; none while another node sweeps.
+     */
+    public Mono<Integer> sweepChunk(LocalDateTime now) {
+        return transactionalOperator.transactional(idempotencyKeyRepository.tryAdvisoryTransactionLock(SWEEP_LOCK_KEY)
+                        .filter(Boolean::booleanValue)
+                        .flatMap(locked -> idempotencyKeyRepository.deleteExpired(now, chunkSize)))
+                .defaultIfEmpty(0);
+    }
+}
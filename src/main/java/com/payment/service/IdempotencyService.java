@@ -1,48 +1,206 @@
 package com.payment.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.payment.entity.IdempotencyKey;
+import com.payment.logging.CorrelationId;
+import com.payment.profiling.FlightEvents;
 import com.payment.repository.IdempotencyKeyRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
+/**
+ * Idempotency keys live in Redis as {@code idempotency:<key>}, holding either the
+ * {@value #IN_PROGRESS} marker while the first request runs or the JSON response once it
+ * completed. The Postgres row is the durable copy, consulted only when Redis has no entry and
+ * {@link IdempotencyKeyFilter} says the key may have been recorded, so a new key costs the
+ * Redis claim alone.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class IdempotencyService {
 
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String KEYSPACE = "idempotency";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    // Value written before responses were stored in Redis
+    private static final String LEGACY_PROCESSED = "PROCESSED";
+    static final Duration RESPONSE_TTL = Duration.ofHours(24);
+
     private final IdempotencyKeyRepository idempotencyKeyRepository;
     private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyKeyFilter keyFilter;
+    private final Duration inProgressTtl;
+    private final ConcurrentMap<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter replayed;
+    private final Counter inProgress;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    @Autowired
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              @Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                              ObjectMapper objectMapper,
+                              IdempotencyKeyFilter keyFilter,
+                              MeterRegistry meterRegistry,
+                              @Value("${payment.idempotency.in-progress-ttl:60s}") Duration inProgressTtl) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.keyFilter = keyFilter;
+        this.inProgressTtl = inProgressTtl;
+        this.replayed = duplicates(meterRegistry, "replayed");
+        this.inProgress = duplicates(meterRegistry, "in_progress");
+        this.redisHits = ProviderOrderIndex.redisLookups(meterRegistry, KEYSPACE, "hit");
+        this.redisMisses = ProviderOrderIndex.redisLookups(meterRegistry, KEYSPACE, "miss");
+    }
+
+    /**
+     * Runs {@code action} at most once per key. Concurrent callers on this node share the
+     * same in-flight execution, callers on other nodes get a conflict while it runs, and
+     * later callers receive the stored response.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> executeOnce(String key, Class<T> responseType, Supplier<Mono<T>> action) {
+        return Mono.defer(() -> (Mono<T>) inFlight.computeIfAbsent(key, k -> claim(k, responseType)
+                .switchIfEmpty(Mono.defer(action)
+                        .onErrorResume(error -> release(k).then(Mono.error(error)))
+                        .flatMap(response -> complete(k, response).thenReturn(response)))
+                .doFinally(signal -> inFlight.remove(k))
+                .cache()));
+    }
 
-    public Mono<Boolean> checkIdempotency(String key) {
-        return redisTemplate.hasKey("idempotency:" + key)
-                .flatMap(exists -> {
-                    if (Boolean.TRUE.equals(exists)) {
-                        return Mono.just(true);
+    /**
+     * Atomically claims the key. Completes empty when the caller now owns the key, emits the
+     * stored response when the key already completed, and fails with
+     * {@link IllegalStateException} while another request holds it.
+     */
+    public <T> Mono<T> claim(String key, Class<T> responseType) {
+        String redisKey = KEY_PREFIX + key;
+        return FlightEvents.redis("SETNX", KEYSPACE,
+                        redisTemplate.opsForValue().setIfAbsent(redisKey, IN_PROGRESS, inProgressTtl))
+                .flatMap(claimed -> {
+                    if (!Boolean.TRUE.equals(claimed)) {
+                        return replay(key, responseType);
                     }
-                    return idempotencyKeyRepository.findByIdempotencyKey(key)
-                            .map(k -> true)
-                            .defaultIfEmpty(false);
-                });
+                    return keyFilter.mightContain(key)
+                            ? this.<T>findStoredResponse(key, responseType)
+                                    .switchIfEmpty(Mono.fromRunnable(keyFilter::recordFalsePositive))
+                            : Mono.empty();
+                })
+                .doOnNext(response -> replayed.increment());
     }
 
-    public Mono<Void> saveIdempotencyKey(String key, JsonNode response) {
+    /**
+     * Records the response as the outcome of the key, in Postgres and in Redis.
+     */
+    public Mono<Void> saveIdempotencyKey(String key, Object response) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
         IdempotencyKey idempotencyKey = IdempotencyKey.builder()
                 .idempotencyKey(key)
-                .responseData(response)
+                .responseData(CompactJson.compress(json))
                 .status("PROCESSED")
                 .createdAt(LocalDateTime.now())
-                .expiresAt(LocalDateTime.now().plusHours(24))
+                .expiresAt(LocalDateTime.now().plus(RESPONSE_TTL))
                 .build();
 
-        return idempotencyKeyRepository.save(idempotencyKey)
-                .flatMap(saved -> redisTemplate.opsForValue()
-                        .set("idempotency:" + key, "PROCESSED", Duration.ofHours(24))
-                        .then());
+        // In the filter before Postgres, so no node skips the lookup of a recorded key
+        return keyFilter.add(key)
+                .then(idempotencyKeyRepository.save(idempotencyKey))
+                .then(cacheResponse(key, new String(json, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Records the response of an action that already took effect, like
+     * {@link #saveIdempotencyKey}, but never fails: the key must not run again either way. When
+     * recording fails the response is kept in Redis alone, or failing that the claim is held
+     * for {@link #RESPONSE_TTL} instead of its in-progress TTL, so retries replay or conflict.
+     */
+    public Mono<Void> complete(String key, Object response) {
+        String redisKey = KEY_PREFIX + key;
+        return saveIdempotencyKey(key, response)
+                .onErrorResume(error -> CorrelationId.logError(log, "Failed to record idempotency key, keeping it in Redis only",
+                                error, "idempotencyKey", key)
+                        .then(Mono.fromCallable(() -> objectMapper.writeValueAsString(response)))
+                        .flatMap(json -> cacheResponse(key, json))
+                        .onErrorResume(cacheError -> FlightEvents.redis("EXPIRE", KEYSPACE,
+                                        redisTemplate.expire(redisKey, RESPONSE_TTL))
+                                .then())
+                        .onErrorResume(claimError -> CorrelationId.logError(log,
+                                "Failed to hold idempotency key, a retry after its in-progress TTL may run again",
+                                claimError, "idempotencyKey", key)));
+    }
+
+    /**
+     * Gives up a claim after the request failed, so a retry can run again.
+     */
+    public Mono<Void> release(String key) {
+        return FlightEvents.redis("DEL", KEYSPACE, redisTemplate.opsForValue().delete(KEY_PREFIX + key))
+                .then()
+                .onErrorResume(error -> CorrelationId.logError(log, "Failed to release idempotency key",
+                        error, "idempotencyKey", key));
+    }
+
+    private <T> Mono<T> replay(String key, Class<T> responseType) {
+        return FlightEvents.redis("GET", KEYSPACE, redisTemplate.opsForValue().get(KEY_PREFIX + key))
+                .flatMap(value -> {
+                    redisHits.increment();
+                    if (IN_PROGRESS.equals(value)) {
+                        inProgress.increment();
+                        return Mono.error(new IllegalStateException("A request with this idempotency key is already in progress"));
+                    }
+                    if (LEGACY_PROCESSED.equals(value)) {
+                        return findStoredResponse(key, responseType);
+                    }
+                    return Mono.fromCallable(() -> objectMapper.readValue(value, responseType));
+                })
+                // The entry expired between the claim attempt and the read
+                .switchIfEmpty(Mono.defer(() -> {
+                    redisMisses.increment();
+                    return findStoredResponse(key, responseType);
+                }));
+    }
+
+    private <T> Mono<T> findStoredResponse(String key, Class<T> responseType) {
+        // Postgres outlives Redis evictions and restarts, so a fresh claim still checks it
+        // Expired rows wait for IdempotencyKeySweeper, they no longer count
+        return idempotencyKeyRepository.findByIdempotencyKey(key)
+                .filter(stored -> stored.getResponseData() != null
+                        && (stored.getExpiresAt() == null || stored.getExpiresAt().isAfter(LocalDateTime.now())))
+                .flatMap(stored -> Mono.fromCallable(() -> new String(CompactJson.decompress(stored.getResponseData()), StandardCharsets.UTF_8)))
+                .flatMap(json -> cacheResponse(key, json)
+                        .then(Mono.fromCallable(() -> objectMapper.readValue(json, responseType))));
+    }
+
+    private Mono<Void> cacheResponse(String key, String json) {
+        return FlightEvents.redis("SET", KEYSPACE, redisTemplate.opsForValue()
+                        .set(KEY_PREFIX + key, json, RESPONSE_TTL))
+                .then();
+    }
+
+    private static Counter duplicates(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("payment.idempotency.duplicates")
+                .description("Requests that reused an idempotency key")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 }
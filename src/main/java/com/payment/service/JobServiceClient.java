@@ -1,55 +1,314 @@
 package com.payment.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Job lookups against the job service, cached per job and guarded against a slow or failing
+ * downstream.
+ *
+ * <p>Answers are cached with separate TTLs for yes and no; a completed job never becomes
+ * incomplete again, so that answer is kept longest. Each request has a timeout, connection
+ * failures and 5xx responses are retried {@code max-retries} times, and a circuit breaker
+ * stops calling a service that keeps failing or answering slowly. With a non-zero
+ * {@code hedge-delay} a second request is sent when the first has not answered by then, and
+ * whichever answers first wins. Errors, timeouts and an open circuit still answer
+ * {@code false}, but are not cached.
+ *
+ * <p>Concurrent lookups of the same job share one request. With {@code batch.enabled} the
+ * misses are collected for up to {@code batch.window} or {@code batch.max-size} ids and sent
+ * as one {@code POST /jobs/validate:batch} or {@code /jobs/complete:batch} with a JSON array
+ * of ids, answered by a JSON object of id to boolean; ids missing from the answer count as
+ * {@code false}. Without it every job is looked up on its own.
+ */
 @Slf4j
 @Service
 public class JobServiceClient {
 
+    private static final String VALIDATE = "validate";
+    private static final String COMPLETE = "complete";
+    private static final String BATCH = "_batch";
+    private static final int BATCH_CONCURRENCY = 8;
+    private static final ParameterizedTypeReference<Map<UUID, Boolean>> BATCH_ANSWER = new ParameterizedTypeReference<>() {
+    };
+
     private final WebClient webClient;
     private final String jobServiceUrl;
+    private final Duration timeout;
+    private final Duration hedgeDelay;
+    private final int maxRetries;
+    private final CircuitBreaker circuitBreaker;
+    private final Cache<UUID, Boolean> validity;
+    private final Cache<UUID, Boolean> completion;
+    private final Map<String, Counter> cacheCounters = new HashMap<>();
+    private final Map<String, Timer> requestTimers = new HashMap<>();
+    private final Map<UUID, Sinks.One<Boolean>> validityInFlight = new ConcurrentHashMap<>();
+    private final Map<UUID, Sinks.One<Boolean>> completionInFlight = new ConcurrentHashMap<>();
+    private final Sinks.Many<UUID> validityBatches;
+    private final Sinks.Many<UUID> completionBatches;
 
-    public JobServiceClient(WebClient webClient, @Value("${payment.job-service.url:mock}") String jobServiceUrl) {
+    @Autowired
+    public JobServiceClient(@Qualifier("jobServiceWebClient") WebClient webClient,
+                            MeterRegistry meterRegistry,
+                            @Value("${payment.job-service.url:mock}") String jobServiceUrl,
+                            @Value("${payment.job-service.timeout:500ms}") Duration timeout,
+                            @Value("${payment.job-service.hedge-delay:0ms}") Duration hedgeDelay,
+                            @Value("${payment.job-service.max-retries:1}") int maxRetries,
+                            @Value("${payment.job-service.circuit-breaker.failure-rate:50}") float failureRate,
+                            @Value("${payment.job-service.circuit-breaker.open-duration:10s}") Duration openDuration,
+                            @Value("${payment.job-service.cache.maximum-size:100000}") long maximumSize,
+                            @Value("${payment.job-service.cache.valid-ttl:5m}") Duration validTtl,
+                            @Value("${payment.job-service.cache.invalid-ttl:30s}") Duration invalidTtl,
+                            @Value("${payment.job-service.cache.complete-ttl:24h}") Duration completeTtl,
+                            @Value("${payment.job-service.cache.incomplete-ttl:10s}") Duration incompleteTtl,
+                            @Value("${payment.job-service.batch.enabled:false}") boolean batchEnabled,
+                            @Value("${payment.job-service.batch.max-size:100}") int batchMaxSize,
+                            @Value("${payment.job-service.batch.window:5ms}") Duration batchWindow) {
         this.webClient = webClient;
         this.jobServiceUrl = jobServiceUrl;
+        this.timeout = timeout;
+        this.hedgeDelay = hedgeDelay;
+        this.maxRetries = maxRetries;
+        this.circuitBreaker = CircuitBreaker.of("job-service", CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRate)
+                .slowCallRateThreshold(failureRate)
+                .slowCallDurationThreshold(timeout)
+                .slidingWindowSize(20)
+                .minimumNumberOfCalls(10)
+                .waitDurationInOpenState(openDuration)
+                .build());
+        this.validity = cache(maximumSize, validTtl, invalidTtl);
+        this.completion = cache(maximumSize, completeTtl, incompleteTtl);
+
+        for (String operation : new String[]{VALIDATE, COMPLETE}) {
+            for (String result : new String[]{"hit", "miss", "coalesced"}) {
+                cacheCounters.put(operation + result, Counter.builder("payment.job_service.cache")
+                        .description("Job service answers served from the cache")
+                        .tag("operation", operation)
+                        .tag("result", result)
+                        .register(meterRegistry));
+            }
+            for (String request : new String[]{operation, operation + BATCH}) {
+                for (String outcome : new String[]{"success", "error", "cancelled"}) {
+                    requestTimers.put(request + outcome, Timer.builder("payment.job_service.requests")
+                            .description("Job service request latency, hedged attempts included")
+                            .tag("operation", request)
+                            .tag("outcome", outcome)
+                            .publishPercentiles(0.5, 0.99)
+                            .register(meterRegistry));
+                }
+            }
+        }
+        Gauge.builder("payment.job_service.circuit_breaker.state", circuitBreaker, breaker -> breaker.getState().getOrder())
+                .description("0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+
+        boolean batching = batchEnabled && !"mock".equalsIgnoreCase(jobServiceUrl);
+        this.validityBatches = batching ? batches(VALIDATE, validity, validityInFlight, batchMaxSize, batchWindow) : null;
+        this.completionBatches = batching ? batches(COMPLETE, completion, completionInFlight, batchMaxSize, batchWindow) : null;
     }
 
     public Mono<Boolean> validateJob(UUID jobId) {
-        log.info("Validating job existence: {}", jobId);
-        
+        log.debug("Validating job existence: {}", jobId);
+        return lookup(VALIDATE, validity, validityInFlight, validityBatches, jobId);
+    }
+
+    public Mono<Boolean> isJobComplete(UUID jobId) {
+        log.debug("Checking if job is complete: {}", jobId);
+        return lookup(COMPLETE, completion, completionInFlight, completionBatches, jobId);
+    }
+
+    @PreDestroy
+    public void close() {
+        // Ids already queued are still sent, the buffers flush on completion
+        complete(validityBatches);
+        complete(completionBatches);
+    }
+
+    private Mono<Boolean> lookup(String operation, Cache<UUID, Boolean> cache, Map<UUID, Sinks.One<Boolean>> inFlight,
+                                 Sinks.Many<UUID> batches, UUID jobId) {
         if ("mock".equalsIgnoreCase(jobServiceUrl)) {
             return Mono.just(true);
         }
 
-        return webClient.get()
-                .uri(jobServiceUrl + "/jobs/" + jobId + "/validate")
-                .retrieve()
-                .bodyToMono(Boolean.class)
-                .onErrorResume(e -> {
-                    log.error("Error validating job {}: {}", jobId, e.getMessage());
-                    return Mono.just(false);
-                });
+        Boolean cached = cache.getIfPresent(jobId);
+        if (cached != null) {
+            cacheCounters.get(operation + "hit").increment();
+            return Mono.just(cached);
+        }
+
+        return Mono.defer(() -> {
+            Sinks.One<Boolean> answer = Sinks.one();
+            Sinks.One<Boolean> pending = inFlight.putIfAbsent(jobId, answer);
+            if (pending != null) {
+                cacheCounters.get(operation + "coalesced").increment();
+                return pending.asMono();
+            }
+            cacheCounters.get(operation + "miss").increment();
+            if (!enqueue(batches, jobId)) {
+                call(operation, webClient.get()
+                        .uri(jobServiceUrl + "/jobs/" + jobId + "/" + operation)
+                        .retrieve()
+                        .bodyToMono(Boolean.class)
+                        .defaultIfEmpty(false))
+                        .subscribe(
+                                result -> settle(cache, inFlight, jobId, result),
+                                error -> fail(operation, inFlight, List.of(jobId), error));
+            }
+            return answer.asMono();
+        });
     }
 
-    public Mono<Boolean> isJobComplete(UUID jobId) {
-        log.info("Checking if job is complete: {}", jobId);
-        
-        if ("mock".equalsIgnoreCase(jobServiceUrl)) {
-            return Mono.just(true);
+    private Sinks.Many<UUID> batches(String operation, Cache<UUID, Boolean> cache, Map<UUID, Sinks.One<Boolean>> inFlight,
+                                     int maxSize, Duration window) {
+        // Once this many ids are waiting, further misses are looked up on their own
+        Sinks.Many<UUID> batches = Sinks.many().unicast().onBackpressureBuffer(Queues.<UUID>get(maxSize * 64).get());
+        batches.asFlux()
+                .bufferTimeout(maxSize, window, true)
+                .flatMap(jobIds -> call(operation + BATCH, webClient.post()
+                        .uri(jobServiceUrl + "/jobs/" + operation + ":batch")
+                        .bodyValue(jobIds)
+                        .retrieve()
+                        .bodyToMono(BATCH_ANSWER)
+                        .defaultIfEmpty(Map.of()))
+                        .doOnNext(answers -> {
+                            for (UUID jobId : jobIds) {
+                                settle(cache, inFlight, jobId, Boolean.TRUE.equals(answers.get(jobId)));
+                            }
+                        })
+                        .onErrorResume(error -> {
+                            fail(operation, inFlight, jobIds, error);
+                            return Mono.empty();
+                        }), BATCH_CONCURRENCY)
+                .subscribe();
+        return batches;
+    }
+
+    private static void complete(Sinks.Many<UUID> batches) {
+        if (batches != null) {
+            synchronized (batches) {
+                batches.tryEmitComplete();
+            }
+        }
+    }
+
+    private static boolean enqueue(Sinks.Many<UUID> batches, UUID jobId) {
+        if (batches == null) {
+            return false;
+        }
+        // A unicast sink accepts one emitter at a time
+        synchronized (batches) {
+            return batches.tryEmitNext(jobId).isSuccess();
+        }
+    }
+
+    private static void settle(Cache<UUID, Boolean> cache, Map<UUID, Sinks.One<Boolean>> inFlight, UUID jobId, boolean answer) {
+        // Cache first, so a lookup arriving after the in-flight entry is gone finds the answer
+        cache.put(jobId, answer);
+        Sinks.One<Boolean> waiting = inFlight.remove(jobId);
+        if (waiting != null) {
+            waiting.tryEmitValue(answer);
         }
+    }
+
+    private static void fail(String operation, Map<UUID, Sinks.One<Boolean>> inFlight, List<UUID> jobIds, Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            log.warn("Job service circuit open, rejecting {} for {} job(s)", operation, jobIds.size());
+        } else {
+            log.error("Error calling job service {} for {} job(s): {}", operation, jobIds.size(), error.getMessage());
+        }
+        for (UUID jobId : jobIds) {
+            Sinks.One<Boolean> waiting = inFlight.remove(jobId);
+            if (waiting != null) {
+                waiting.tryEmitValue(false);
+            }
+        }
+    }
+
+    private <T> Mono<T> call(String operation, Mono<T> request) {
+        Mono<T> attempt = timed(operation, request.timeout(timeout));
+        Mono<T> hedged = hedgeDelay.isZero()
+                ? attempt
+                : Mono.firstWithValue(attempt, Mono.delay(hedgeDelay).then(attempt));
+        return hedged
+                .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(20)).filter(JobServiceClient::retryable))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+
+    private <T> Mono<T> timed(String operation, Mono<T> request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request.doFinally(signal -> requestTimers.get(operation + outcome(signal))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "success";
+            case CANCEL -> "cancelled";
+            default -> "error";
+        };
+    }
+
+    private static boolean retryable(Throwable error) {
+        // A timeout already spent the caller's budget, retrying would only double it
+        return error instanceof WebClientRequestException
+                || (error instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError());
+    }
+
+    private static Cache<UUID, Boolean> cache(long maximumSize, Duration trueTtl, Duration falseTtl) {
+        long trueNanos = trueTtl.toNanos();
+        long falseNanos = falseTtl.toNanos();
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<UUID, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(UUID key, Boolean value, long currentTime) {
+                        return value ? trueNanos : falseNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID key, Boolean value, long currentTime, long currentDuration) {
+                        return value ? trueNanos : falseNanos;
+                    }
 
-        return webClient.get()
-                .uri(jobServiceUrl + "/jobs/" + jobId + "/complete")
-                .retrieve()
-                .bodyToMono(Boolean.class)
-                .onErrorResume(e -> {
-                    log.error("Error checking job completion {}: {}", jobId, e.getMessage());
-                    return Mono.just(false);
-                });
+                    @Override
+                    public long expireAfterRead(UUID key, Boolean value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 }
@@ -1,54 +1,118 @@
 package com.payment.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Verifies HS256 bearer tokens with one shared, thread-safe parser.
+ *
+ * <p>Verified claims are cached under a SHA-256 digest of the token, so raw tokens are never
+ * kept, until the token's {@code exp} or {@code payment.jwt.cache-ttl}, whichever comes first.
+ * A repeated token skips the HMAC check and JSON parsing; {@code exp} is still checked on
+ * every call. Rejected tokens are not cached.
+ */
 @Slf4j
 @Service
 public class JwtService {
 
-    @Value("${payment.jwt.secret}")
-    private String secret;
+    private static final String BEARER = "Bearer ";
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
 
-    private SecretKey key;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verified;
 
-    @PostConstruct
-    public void init() {
-        this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-    }
+    @Autowired
+    public JwtService(@Value("${payment.jwt.secret}") String secret,
+                      @Value("${payment.jwt.cache-size:100000}") long cacheSize,
+                      @Value("${payment.jwt.cache-ttl:10m}") Duration cacheTtl) {
+        this.parser = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .build();
+        long maxNanos = cacheTtl.toNanos();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long untilExpiry = Duration.ofMillis(claims.getExpiration().getTime() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(untilExpiry, maxNanos));
+                    }
 
-    public Mono<Boolean> validateToken(String token, UUID userId) {
-        return Mono.fromCallable(() -> {
-            if (token == null || !token.startsWith("Bearer ")) {
-                return false;
-            }
-            String jwt = token.substring(7);
-            try {
-                Claims claims = Jwts.parser()
-                        .verifyWith(key)
-                        .build()
-                        .parseSignedClaims(jwt)
-                        .getPayload();
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
 
-                String subject = claims.getSubject();
-                Date expiration = claims.getExpiration();
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the claims of a valid, unexpired {@code Authorization: Bearer} token, empty otherwise.
+     * Tokens without {@code sub} or {@code exp} are rejected.
+     */
+    public Optional<Claims> authenticate(String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            return Optional.empty();
+        }
+        String jwt = authorization.substring(BEARER.length());
+        String digest = digest(jwt);
 
-                return subject.equals(userId.toString()) && expiration.after(new Date());
+        Claims claims = verified.getIfPresent(digest);
+        if (claims == null) {
+            try {
+                claims = parser.parseSignedClaims(jwt).getPayload();
             } catch (Exception e) {
-                log.error("Token validation failed: {}", e.getMessage());
-                return false;
+                log.warn("Token validation failed: {}", e.getMessage());
+                return Optional.empty();
             }
-        });
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                log.warn("Token validation failed: sub and exp are required");
+                return Optional.empty();
+            }
+            verified.put(digest, claims);
+        }
+        // The cache may hold an entry for a moment past exp
+        return claims.getExpiration().after(new Date()) ? Optional.of(claims) : Optional.empty();
+    }
+
+    public Mono<Boolean> validateToken(String token, UUID userId) {
+        return Mono.fromCallable(() -> authenticate(token)
+                .map(claims -> claims.getSubject().equals(userId.toString()))
+                .orElse(false));
+    }
+
+    private static String digest(String jwt) {
+        return Base64.getEncoder().withoutPadding()
+                .encodeToString(SHA_256.get().digest(jwt.getBytes(StandardCharsets.US_ASCII)));
     }
 }
@@ -1,157 +1,129 @@
 package com.payment.service;
 
+import com.payment.entity.OutboxEvent;
 import com.payment.entity.Payment;
 import com.payment.entity.Payout;
-import com.payment.event.NotificationEvent;
 import com.payment.event.PaymentEvent;
 import com.payment.event.PayoutEvent;
+import com.payment.repository.OutboxRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes events to the {@code outbox} table instead of sending them. Callers run the
+ * publish methods inside the transaction that changes the state the event describes, so
+ * the event exists exactly when the change does; {@link OutboxRelay} delivers it to Kafka.
+ * Notifications go through {@link NotificationCoalescer}, which merges bursts per recipient.
+ */
 @Slf4j
 @Service
 public class KafkaEventProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxRepository outboxRepository;
+    private final EventEncoder eventEncoder;
+    private final NotificationCoalescer notificationCoalescer;
 
     @Autowired
-    public KafkaEventProducer(KafkaTemplate<String, Object> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public KafkaEventProducer(OutboxRepository outboxRepository,
+                              EventEncoder eventEncoder,
+                              NotificationCoalescer notificationCoalescer) {
+        this.outboxRepository = outboxRepository;
+        this.eventEncoder = eventEncoder;
+        this.notificationCoalescer = notificationCoalescer;
     }
 
     public Mono<Void> publishPaymentSuccessEvent(Payment payment) {
-        log.info("Publishing payment success event for payment: {}", payment.getId());
-
-        PaymentEvent event = PaymentEvent.builder()
-                .paymentId(payment.getId().toString())
-                .jobId(payment.getJobId().toString())
-                .userId(payment.getUserId().toString())
-                .status("SUCCESS")
-                .amount(payment.getAmount().toPlainString())
-                .timestamp(Instant.now().toString())
-                .build();
-
-        kafkaTemplate.send("payment-events", payment.getId().toString(), event);
-
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("type", "payment");
-        metadata.put("timestamp", Instant.now().toString());
-
-        NotificationEvent notification = NotificationEvent.builder()
-                .userName("Payment Service")
-                .username(payment.getUserId().toString())
-                .subject("Payment Successful")
-                .source("WHATSAPP")
-                .message("Your payment of INR " + payment.getAmount() + " for Job #" + payment.getJobId() + " is successful.")
-                .metadata(metadata)
-                .build();
-
-        kafkaTemplate.send("notifications", payment.getUserId().toString(), notification);
-
-        return Mono.empty();
+        log.info("Enqueuing payment success event for payment: {}", payment.getId());
+        return publishPaymentEvent(payment, "SUCCESS", NotificationTemplate.PAYMENT_SUCCESS);
     }
 
     public Mono<Void> publishPaymentFailureEvent(Payment payment) {
-        log.info("Publishing payment failure event for payment: {}", payment.getId());
-
-        PaymentEvent event = PaymentEvent.builder()
-                .paymentId(payment.getId().toString())
-                .jobId(payment.getJobId().toString())
-                .userId(payment.getUserId().toString())
-                .status("FAILED")
-                .amount(payment.getAmount().toPlainString())
-                .timestamp(Instant.now().toString())
-                .build();
-
-        kafkaTemplate.send("payment-events", payment.getId().toString(), event);
-
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("type", "payment");
-        metadata.put("timestamp", Instant.now().toString());
-
-        NotificationEvent notification = NotificationEvent.builder()
-                .userName("Payment Service")
-                .username(payment.getUserId().toString())
-                .subject("Payment Failed")
-                .source("EMAIL")
-                .message("Your payment of INR " + payment.getAmount() + " for Job #" + payment.getJobId() + " has failed. Please try again.")
-                .metadata(metadata)
-                .build();
-
-        kafkaTemplate.send("notifications", payment.getUserId().toString(), notification);
-
-        return Mono.empty();
+        log.info("Enqueuing payment failure event for payment: {}", payment.getId());
+        return publishPaymentEvent(payment, "FAILED", NotificationTemplate.PAYMENT_FAILURE);
     }
 
     public Mono<Void> publishPayoutSuccessEvent(Payout payout) {
-        log.info("Publishing payout success event for payout: {}", payout.getId());
-
-        PayoutEvent event = PayoutEvent.builder()
-                .payoutId(payout.getId().toString())
-                .jobId(payout.getJobId().toString())
-                .labourId(payout.getLabourId().toString())
-                .status("PROCESSED")
-                .amount(payout.getAmount().toPlainString())
-                .commission(payout.getCommission().toPlainString())
-                .timestamp(Instant.now().toString())
-                .build();
-
-        kafkaTemplate.send("payout-events", payout.getId().toString(), event);
-
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("type", "payout");
-        metadata.put("timestamp", Instant.now().toString());
-
-        NotificationEvent notification = NotificationEvent.builder()
-                .userName("Payout Service")
-                .username(payout.getLabourId().toString())
-                .subject("Payout Settled")
-                .source("WHATSAPP")
-                .message("You received ₹" + payout.getAmount() + " for Job #" + payout.getJobId() + ".")
-                .metadata(metadata)
-                .build();
-
-        kafkaTemplate.send("notifications", payout.getLabourId().toString(), notification);
+        log.info("Enqueuing payout success event for payout: {}", payout.getId());
+        return publishPayoutEvent(payout, "PROCESSED", successTemplate(payout));
+    }
 
-        return Mono.empty();
+    /**
+     * Enqueues success events for a settled batch with one multi-row insert.
+     */
+    public Mono<Void> publishPayoutSuccessEvents(List<Payout> payouts) {
+        if (payouts.isEmpty()) {
+            return Mono.empty();
+        }
+        log.info("Enqueuing {} payout success events", payouts.size());
+        Instant now = Instant.now();
+        List<OutboxEvent> events = new ArrayList<>(payouts.size());
+        for (Payout payout : payouts) {
+            OutboxEvent event = eventEncoder.outboxEvent("payout-events", payout.getId(), payoutEvent(payout, "PROCESSED", now));
+            event.setAggregateId(payout.getId().toString());
+            events.add(event);
+        }
+        return outboxRepository.insertAll(events)
+                .then(Flux.fromIterable(payouts)
+                        .concatMap(payout -> notificationCoalescer.submit(new PendingNotification(successTemplate(payout),
+                                payout.getLabourId().toString(), payout.getAmount(), payout.getJobId(), now)))
+                        .then());
     }
 
     public Mono<Void> publishPayoutFailureEvent(Payout payout) {
-        log.info("Publishing payout failure event for payout: {}", payout.getId());
+        log.info("Enqueuing payout failure event for payout: {}", payout.getId());
+        return publishPayoutEvent(payout, "FAILED", payout.getJobId() != null
+                ? NotificationTemplate.PAYOUT_FAILURE
+                : NotificationTemplate.AGGREGATED_PAYOUT_FAILURE);
+    }
 
-        PayoutEvent event = PayoutEvent.builder()
-                .payoutId(payout.getId().toString())
-                .jobId(payout.getJobId().toString())
-                .labourId(payout.getLabourId().toString())
-                .status("FAILED")
-                .amount(payout.getAmount().toPlainString())
-                .commission(payout.getCommission().toPlainString())
-                .timestamp(Instant.now().toString())
+    private Mono<Void> publishPaymentEvent(Payment payment, String status, NotificationTemplate notification) {
+        Instant now = Instant.now();
+        PaymentEvent event = PaymentEvent.builder()
+                .paymentId(payment.getId())
+                .jobId(payment.getJobId())
+                .userId(payment.getUserId())
+                .status(status)
+                .amount(payment.getAmount())
+                .timestamp(now)
                 .build();
 
-        kafkaTemplate.send("payout-events", payout.getId().toString(), event);
+        return enqueue(payment.getId(), eventEncoder.outboxEvent("payment-events", payment.getId(), event))
+                .then(notificationCoalescer.submit(new PendingNotification(notification,
+                        payment.getUserId().toString(), payment.getAmount(), payment.getJobId(), now)));
+    }
+
+    private Mono<Void> publishPayoutEvent(Payout payout, String status, NotificationTemplate notification) {
+        Instant now = Instant.now();
+        return enqueue(payout.getId(), eventEncoder.outboxEvent("payout-events", payout.getId(), payoutEvent(payout, status, now)))
+                .then(notificationCoalescer.submit(new PendingNotification(notification,
+                        payout.getLabourId().toString(), payout.getAmount(), payout.getJobId(), now)));
+    }
 
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("type", "payout");
-        metadata.put("timestamp", Instant.now().toString());
+    private static NotificationTemplate successTemplate(Payout payout) {
+        return payout.getJobId() != null ? NotificationTemplate.PAYOUT_SUCCESS : NotificationTemplate.AGGREGATED_PAYOUT_SUCCESS;
+    }
 
-        NotificationEvent notification = NotificationEvent.builder()
-                .userName("Payout Service")
-                .username(payout.getLabourId().toString())
-                .subject("Payout Failed")
-                .source("EMAIL")
-                .message("Your payout for Job #" + payout.getJobId() + " could not be processed. Please contact support.")
-                .metadata(metadata)
+    private static PayoutEvent payoutEvent(Payout payout, String status, Instant now) {
+        return PayoutEvent.builder()
+                .payoutId(payout.getId())
+                .jobId(payout.getJobId())
+                .labourId(payout.getLabourId())
+                .status(status)
+                .amount(payout.getAmount())
+                .commission(payout.getCommission())
+                .timestamp(now)
                 .build();
+    }
 
-        kafkaTemplate.send("notifications", payout.getLabourId().toString(), notification);
-
-        return Mono.empty();
+    private Mono<Void> enqueue(UUID aggregateId, OutboxEvent event) {
+        event.setAggregateId(aggregateId.toString());
+        return outboxRepository.save(event).then();
     }
 }
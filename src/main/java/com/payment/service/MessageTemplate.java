@@ -0,0 +1,66 @@
+package com.payment.service;
+
+import com.payment.money.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message pattern with positional {@code {0}}, {@code {1}} ... placeholders, split into
+ * literal segments once so rendering is a single presized {@link StringBuilder} pass.
+ */
+final class MessageTemplate {
+
+    private final String[] literals;
+    private final int[] arguments;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, int[] arguments) {
+        this.literals = literals;
+        this.arguments = arguments;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    static MessageTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        int start = 0;
+        int open = pattern.indexOf('{');
+        while (open >= 0) {
+            int close = pattern.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in " + pattern);
+            }
+            literals.add(pattern.substring(start, open));
+            arguments.add(Integer.parseInt(pattern.substring(open + 1, close)));
+            start = close + 1;
+            open = pattern.indexOf('{', start);
+        }
+        literals.add(pattern.substring(start));
+        return new MessageTemplate(literals.toArray(String[]::new),
+                arguments.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    String render(Object... values) {
+        StringBuilder out = new StringBuilder(literalLength + 16 * arguments.length);
+        appendTo(out, values);
+        return out.toString();
+    }
+
+    void appendTo(StringBuilder out, Object... values) {
+        for (int i = 0; i < arguments.length; i++) {
+            out.append(literals[i]);
+            Object value = values[arguments[i]];
+            if (value instanceof Money money) {
+                money.appendTo(out);
+            } else {
+                out.append(value);
+            }
+        }
+        out.append(literals[arguments.length]);
+    }
+}
@@ -0,0 +1,300 @@
+package com.payment.service;
+
+import com.payment.entity.OutboxEvent;
+import com.payment.event.NotificationEvent;
+import com.payment.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Buffers notifications per recipient for {@code payment.notifications.coalesce-window} and
+ * then writes one event to the outbox: the original message for a single notification, a
+ * digest listing every message otherwise.
+ *
+ * <p>Notifications are buffered only after the transaction that enqueued them commits.
+ * A recipient's buffer is flushed early once it holds {@code max-per-user} notifications,
+ * and all buffers are once {@code max-pending} are held in total. Everything still buffered
+ * is written on shutdown. A zero window turns coalescing off: each notification is written
+ * to the outbox inside the caller's transaction, as before.
+ *
+ * <p>A failed write puts its notifications back into their recipients' buffers, ahead of
+ * anything buffered since, and no flush runs for {@code payment.notifications.retry-backoff}.
+ * Meanwhile the caps bound the buffers instead of triggering flushes: whatever does not fit
+ * is dropped, oldest restored notifications first, and counted in
+ * {@code payment.notifications.dropped}.
+ */
+@Slf4j
+@Service
+public class NotificationCoalescer {
+
+    private static final String TOPIC = "notifications";
+    private static final MessageTemplate DIGEST_SUBJECT = MessageTemplate.compile("{0} updates");
+    private static final MessageTemplate DIGEST_HEADER = MessageTemplate.compile("You have {0} updates:");
+
+    private final OutboxRepository outboxRepository;
+    private final EventEncoder eventEncoder;
+    private final Duration window;
+    private final int maxPerUser;
+    private final int maxPending;
+    private final Duration retryBackoff;
+    private final Duration shutdownTimeout;
+    private final Counter dropped;
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    // System.nanoTime() before which flushes are held back after a failed write
+    private volatile long backoffUntil = System.nanoTime();
+
+    @Autowired
+    public NotificationCoalescer(OutboxRepository outboxRepository,
+                                 EventEncoder eventEncoder,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${payment.notifications.coalesce-window:5s}") Duration window,
+                                 @Value("${payment.notifications.max-per-user:50}") int maxPerUser,
+                                 @Value("${payment.notifications.max-pending:10000}") int maxPending,
+                                 @Value("${payment.notifications.retry-backoff:1s}") Duration retryBackoff,
+                                 @Value("${payment.notifications.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        this.outboxRepository = outboxRepository;
+        this.eventEncoder = eventEncoder;
+        this.window = window;
+        this.maxPerUser = maxPerUser;
+        this.maxPending = maxPending;
+        this.retryBackoff = retryBackoff;
+        this.shutdownTimeout = shutdownTimeout;
+        this.dropped = Counter.builder("payment.notifications.dropped")
+                .description("Buffered notifications dropped while outbox writes were failing")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> submit(PendingNotification notification) {
+        if (window.isZero()) {
+            return write(List.of(toOutboxEvent(notification.username(), List.of(notification))));
+        }
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .map(synchronizations -> {
+                    if (!synchronizations.isSynchronizationActive()) {
+                        return false;
+                    }
+                    synchronizations.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public Mono<Void> afterCommit() {
+                            // Flushes triggered here must not run on the connection that just committed
+                            return add(notification).contextWrite(context -> Context.empty());
+                        }
+                    });
+                    return true;
+                })
+                .onErrorResume(NoTransactionException.class, e -> Mono.just(false))
+                .flatMap(deferred -> deferred ? Mono.<Void>empty() : add(notification));
+    }
+
+    /**
+     * Writes every buffer that has been open for the whole window, unless a recent write failed.
+     */
+    @Scheduled(fixedDelayString = "${payment.notifications.flush-interval-ms:500}")
+    public Mono<Void> flushDue() {
+        if (backingOff()) {
+            return Mono.empty();
+        }
+        long cutoff = System.nanoTime() - window.toNanos();
+        return flush(buffer -> buffer.openedAt - cutoff <= 0);
+    }
+
+    public Mono<Void> flushAll() {
+        return flush(buffer -> true);
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            flushAll().block(shutdownTimeout);
+        } catch (RuntimeException e) {
+            log.error("Could not flush {} buffered notifications on shutdown", pending.get(), e);
+            return;
+        }
+        if (pending.get() > 0) {
+            log.error("Dropping {} buffered notifications on shutdown", pending.get());
+        }
+    }
+
+    private Mono<Void> add(PendingNotification notification) {
+        if (backingOff()) {
+            Buffer buffer = new Buffer(System.nanoTime());
+            buffer.notifications.add(notification);
+            dropped.increment(keep(notification.username(), buffer, false));
+            return Mono.empty();
+        }
+        Buffer[] full = new Buffer[1];
+        buffers.compute(notification.username(), (username, existing) -> {
+            Buffer buffer = existing != null ? existing : new Buffer(System.nanoTime());
+            buffer.notifications.add(notification);
+            if (buffer.notifications.size() >= maxPerUser) {
+                full[0] = buffer;
+            }
+            return buffer;
+        });
+        if (pending.incrementAndGet() >= maxPending) {
+            return flushAll();
+        }
+        if (full[0] != null) {
+            return flush(buffer -> buffer == full[0]);
+        }
+        return Mono.empty();
+    }
+
+    private Mono<Void> flush(Predicate<Buffer> due) {
+        Map<String, Buffer> flushed = new HashMap<>();
+        List<OutboxEvent> events = new ArrayList<>();
+        for (String username : buffers.keySet()) {
+            Buffer[] removed = new Buffer[1];
+            buffers.computeIfPresent(username, (key, buffer) -> {
+                if (!due.test(buffer)) {
+                    return buffer;
+                }
+                removed[0] = buffer;
+                return null;
+            });
+            if (removed[0] != null) {
+                pending.addAndGet(-removed[0].notifications.size());
+                flushed.put(username, removed[0]);
+                events.add(toOutboxEvent(username, removed[0].notifications));
+            }
+        }
+        if (events.isEmpty()) {
+            return Mono.empty();
+        }
+        return write(events)
+                .onErrorResume(error -> {
+                    backoffUntil = System.nanoTime() + retryBackoff.toNanos();
+                    int lost = 0;
+                    for (Map.Entry<String, Buffer> restored : flushed.entrySet()) {
+                        lost += keep(restored.getKey(), restored.getValue(), true);
+                    }
+                    dropped.increment(lost);
+                    log.error("Could not enqueue {} notification events, retrying in {} and dropping {} over the caps",
+                            events.size(), retryBackoff, lost, error);
+                    return Mono.empty();
+                });
+    }
+
+    private boolean backingOff() {
+        return backoffUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * Buffers as many of {@code incoming}'s notifications as fit under both caps, dropping its
+     * oldest ones first, and returns how many were dropped. An {@code older} buffer was flushed
+     * and failed, so it keeps its place in the window and goes ahead of the current one.
+     */
+    private int keep(String username, Buffer incoming, boolean older) {
+        int count = incoming.notifications.size();
+        int[] kept = new int[1];
+        buffers.compute(username, (key, current) -> {
+            int held = current != null ? current.notifications.size() : 0;
+            kept[0] = reserve(Math.min(count, Math.max(0, maxPerUser - held)));
+            if (kept[0] == 0) {
+                return current;
+            }
+            incoming.notifications.subList(0, count - kept[0]).clear();
+            if (current == null) {
+                return incoming;
+            }
+            if (older) {
+                incoming.notifications.addAll(current.notifications);
+                return incoming;
+            }
+            current.notifications.addAll(incoming.notifications);
+            return current;
+        });
+        return count - kept[0];
+    }
+
+    // Claims up to wanted of the max-pending slots still free and returns how many it got
+    private int reserve(int wanted) {
+        int before = pending.getAndUpdate(held -> held + Math.min(wanted, Math.max(0, maxPending - held)));
+        return Math.min(wanted, Math.max(0, maxPending - before));
+    }
+
+    private Mono<Void> write(List<OutboxEvent> events) {
+        return outboxRepository.insertAll(events).then();
+    }
+
+    private OutboxEvent toOutboxEvent(String username, List<PendingNotification> notifications) {
+        OutboxEvent event = eventEncoder.outboxEvent(TOPIC, username, toNotification(username, notifications));
+        event.setAggregateId(username);
+        return event;
+    }
+
+    private static NotificationEvent toNotification(String username, List<PendingNotification> notifications) {
+        PendingNotification first = notifications.get(0);
+        PendingNotification last = notifications.get(notifications.size() - 1);
+        NotificationTemplate template = first.template();
+        if (notifications.size() == 1) {
+            StringBuilder message = new StringBuilder(96);
+            first.appendMessageTo(message);
+            return NotificationEvent.builder()
+                    .userName(template.userName())
+                    .username(username)
+                    .subject(template.subject())
+                    .source(template.source())
+                    .message(message.toString())
+                    .metadata(Map.of("type", template.type(), "timestamp", first.timestamp().toString()))
+                    .build();
+        }
+
+        int count = notifications.size();
+        StringBuilder message = new StringBuilder(32 + 96 * count);
+        DIGEST_HEADER.appendTo(message, count);
+        String type = template.type();
+        for (PendingNotification notification : notifications) {
+            message.append('\n');
+            notification.appendMessageTo(message);
+            if (!type.equals(notification.template().type())) {
+                type = "digest";
+            }
+        }
+        return NotificationEvent.builder()
+                .userName(template.userName())
+                .username(username)
+                .subject(DIGEST_SUBJECT.render(count))
+                .source(template.source())
+                .message(message.toString())
+                .metadata(Map.of("type", type,
+                        "timestamp", last.timestamp().toString(),
+                        "count", Integer.toString(count)))
+                .build();
+    }
+
+    private static final class Buffer {
+
+        private final long openedAt;
+        // Only touched inside ConcurrentHashMap.compute for the recipient, which serializes access
+        private final List<PendingNotification> notifications = new ArrayList<>();
+
+        private Buffer(long openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.payment.service;
+
+/**
+ * Notifications sent for payment and payout state changes. Messages take the amount as
+ * {@code {0}} and the job id as {@code {1}}; aggregated payouts have no job id.
+ */
+enum NotificationTemplate {
+
+    PAYMENT_SUCCESS("payment", "Payment Service", "Payment Successful", "WHATSAPP",
+            "Your payment of INR {0} for Job #{1} is successful."),
+    PAYMENT_FAILURE("payment", "Payment Service", "Payment Failed", "EMAIL",
+            "Your payment of INR {0} for Job #{1} has failed. Please try again."),
+    PAYOUT_SUCCESS("payout", "Payout Service", "Payout Settled", "WHATSAPP",
+            "You received ₹{0} for Job #{1}."),
+    PAYOUT_FAILURE("payout", "Payout Service", "Payout Failed", "EMAIL",
+            "Your payout for Job #{1} could not be processed. Please contact support."),
+    AGGREGATED_PAYOUT_SUCCESS("payout", "Payout Service", "Payout Settled", "WHATSAPP",
+            "You received ₹{0} for your completed jobs."),
+    AGGREGATED_PAYOUT_FAILURE("payout", "Payout Service", "Payout Failed", "EMAIL",
+            "Your payout of ₹{0} could not be processed. Please contact support.");
+
+    private final String type;
+    private final String userName;
+    private final String subject;
+    private final String source;
+    private final MessageTemplate message;
+
+    NotificationTemplate(String type, String userName, String subject, String source, String message) {
+        this.type = type;
+        this.userName = userName;
+        this.subject = subject;
+        this.source = source;
+        this.message = MessageTemplate.compile(message);
+    }
+
+    String type() {
+        return type;
+    }
+
+    String userName() {
+        return userName;
+    }
+
+    String subject() {
+        return subject;
+    }
+
+    String source() {
+        return source;
+    }
+
+    MessageTemplate message() {
+        return message;
+    }
+}
@@ -0,0 +1,130 @@
+package com.payment.service;
+
+import com.payment.entity.OutboxEvent;
+import com.payment.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Delivers {@code outbox} rows to Kafka at least once. Each batch is read in id order and
+ * deleted in the same transaction once the broker acknowledged it; events of one aggregate
+ * are sent one after another, different aggregates concurrently, which also bounds the
+ * records waiting on a slow broker to {@code payment.outbox.concurrency}. A transaction-scoped
+ * advisory lock keeps a single relay active across nodes, so per-aggregate order holds.
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L;
+
+    private final OutboxRepository outboxRepository;
+    private final ReactiveEventPublisher eventPublisher;
+    private final TransactionalOperator transactionalOperator;
+    private final int batchSize;
+    private final int concurrency;
+    private final Duration sendTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> sendFailures = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       ReactiveEventPublisher eventPublisher,
+                       TransactionalOperator transactionalOperator,
+                       MeterRegistry meterRegistry,
+                       @Value("${payment.outbox.batch-size:500}") int batchSize,
+                       @Value("${payment.outbox.concurrency:32}") int concurrency,
+                       @Value("${payment.outbox.send-timeout:10s}") Duration sendTimeout) {
+        this.outboxRepository = outboxRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionalOperator = transactionalOperator;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.sendTimeout = sendTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Drains the outbox until a batch is short or partly failed. The next run starts
+     * {@code payment.outbox.poll-interval-ms} after this one completed.
+     */
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:200}")
+    public Mono<Void> relay() {
+        return relayBatch()
+                .expand(relayed -> relayed == batchSize ? relayBatch() : Mono.empty())
+                .onErrorResume(error -> {
+                    log.error("Outbox relay failed, retrying on the next run", error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Sends and deletes one batch, returning how many rows were delivered.
+     */
+    public Mono<Integer> relayBatch() {
+        return transactionalOperator.transactional(outboxRepository.tryAdvisoryTransactionLock(RELAY_LOCK_KEY)
+                .filter(Boolean::booleanValue)
+                .flatMap(locked -> outboxRepository.lockNextBatch(batchSize).collectList())
+                .flatMap(batch -> Flux.fromIterable(groupByAggregate(batch))
+                        .flatMap(this::sendInOrder, concurrency)
+                        .collectList()
+                        .flatMap(acked -> acked.isEmpty()
+                                ? Mono.just(0)
+                                : outboxRepository.deleteByIds(acked.toArray(Long[]::new)).thenReturn(acked.size()))))
+                .defaultIfEmpty(0);
+    }
+
+    private Flux<Long> sendInOrder(List<OutboxEvent> events) {
+        // Stop at the first failure so later events of the aggregate are not delivered ahead of it
+        return Flux.fromIterable(events)
+                .concatMap(event -> send(event).thenReturn(event.getId()))
+                .onErrorResume(error -> {
+                    log.warn("Outbox delivery for aggregate {} failed, retrying later: {}",
+                            events.get(0).getAggregateId(), error.getMessage());
+                    return Flux.empty();
+                });
+    }
+
+    private Mono<Void> send(OutboxEvent event) {
+        // Payloads are stored already encoded, only the acknowledgement is awaited here
+        return eventPublisher.send(event.getTopic(), event.getMessageKey(), event.getPayload(),
+                        event.getContentType(), event.getEventType())
+                .timeout(sendTimeout)
+                .doOnError(error -> sendFailure(event.getTopic(), error instanceof TimeoutException ? "timeout" : "error")
+                        .increment())
+                .then();
+    }
+
+    // Topics are the few the producers write to, so tagging by topic stays bounded
+    private Counter sendFailure(String topic, String reason) {
+        return sendFailures.computeIfAbsent(topic + '|' + reason, key -> Counter.builder("payment.kafka.send.failures")
+                .description("Outbox events the broker did not acknowledge")
+                .tag("topic", topic)
+                .tag("reason", reason)
+                .register(meterRegistry));
+    }
+
+    private static List<List<OutboxEvent>> groupByAggregate(List<OutboxEvent> batch) {
+        Map<String, List<OutboxEvent>> groups = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            groups.computeIfAbsent(event.getAggregateId(), id -> new ArrayList<>()).add(event);
+        }
+        return new ArrayList<>(groups.values());
+    }
+}
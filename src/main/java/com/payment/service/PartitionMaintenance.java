@@ -0,0 +1,232 @@
+package com.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the monthly partitions of {@code payments} and {@code payouts} ahead of time and
+ * archives those older than the retention. Old partitions are detached concurrently, so
+ * traffic on the parent table is not blocked, then written as gzipped NDJSON, one
+ * {@code row_to_json} line per row, to {@code <directory>/<table>/<partition>.ndjson.gz} and
+ * dropped. A transaction-scoped advisory lock per partition keeps nodes from archiving the same
+ * partition at once.
+ *
+ * <p>The archive is written as {@code .part}, forced to disk and renamed before the drop
+ * commits, so a partition is never gone without its archive. A run that fails part way leaves
+ * the partition detached, or still attached with its detach pending, and the next run picks it
+ * up from there, replacing an archive it had already written.
+ */
+@Slf4j
+@Service
+public class PartitionMaintenance {
+
+    private static final List<String> TABLES = List.of("payments", "payouts");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String ARCHIVE_SUFFIX = ".ndjson.gz";
+    private static final String PART = ".part";
+
+    // Partitions of the table, attached or left detached by an interrupted run
+    private static final String PARTITIONS = "SELECT c.relname, c.relispartition, COALESCE(i.inhdetachpending, FALSE) "
+            + "FROM pg_class c LEFT JOIN pg_inherits i ON i.inhrelid = c.oid "
+            + "WHERE c.relkind = 'r' AND c.relnamespace = current_schema()::regnamespace "
+            + "AND c.relname ~ ('^' || $1 || '_[0-9]{4}_[0-9]{2}$') ORDER BY c.relname";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path directory;
+    private final int fetchSize;
+
+    @Autowired
+    public PartitionMaintenance(DatabaseClient databaseClient,
+                                TransactionalOperator transactionalOperator,
+                                @Value("${payment.partitions.months-ahead:3}") int monthsAhead,
+                                @Value("${payment.partitions.retention-months:24}") int retentionMonths,
+                                @Value("${payment.partitions.archive-directory:partition-archive}") Path directory,
+                                @Value("${payment.partitions.archive-fetch-size:1000}") int fetchSize) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.directory = directory;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Creates missing partitions and archives expired ones, per table. The next run starts
+     * {@code payment.partitions.interval-ms} after this one completed.
+     */
+    @Scheduled(fixedDelayString = "${payment.partitions.interval-ms:3600000}")
+    public Mono<Void> maintain() {
+        return Flux.fromIterable(TABLES)
+                .concatMap(table -> createPartitions(table)
+                        .then(retentionMonths > 0 ? archiveExpired(table) : Mono.empty())
+                        .onErrorResume(error -> {
+                            log.error("Partition maintenance of {} failed, retrying on the next run", table, error);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * Creates the partitions of the current month and the {@code payment.partitions.months-ahead}
+     * following ones.
+     */
+    public Mono<Void> createPartitions(String table) {
+        return databaseClient.sql("SELECT create_monthly_partitions($1, CURRENT_DATE, $2)")
+                .bind(0, table)
+                .bind(1, monthsAhead + 1)
+                .then();
+    }
+
+    /**
+     * Archives every partition of {@code table} whose month ended more than
+     * {@code payment.partitions.retention-months} months ago, returning how many it archived.
+     */
+    public Mono<Long> archiveExpired(String table) {
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        return databaseClient.sql(PARTITIONS)
+                .bind(0, table)
+                .map(row -> new Partition(row.get(0, String.class),
+                        Boolean.TRUE.equals(row.get(1, Boolean.class)),
+                        Boolean.TRUE.equals(row.get(2, Boolean.class))))
+                .all()
+                .filter(partition -> month(table, partition.name()).isBefore(oldestKept))
+                .concatMap(partition -> detach(table, partition).then(archive(table, partition.name())))
+                .count();
+    }
+
+    private Mono<Void> detach(String table, Partition partition) {
+        if (!partition.attached()) {
+            return Mono.empty();
+        }
+        // FINALIZE completes a concurrent detach that was interrupted
+        String mode = partition.detachPending() ? " FINALIZE" : " CONCURRENTLY";
+        return databaseClient.sql("ALTER TABLE " + quote(table) + " DETACH PARTITION " + quote(partition.name()) + mode)
+                .then()
+                .doOnSuccess(done -> log.info("Detached partition {}", partition.name()));
+    }
+
+    private Mono<Void> archive(String table, String partition) {
+        Path archive = directory.resolve(table).resolve(partition + ARCHIVE_SUFFIX);
+        Path part = archive.resolveSibling(partition + ARCHIVE_SUFFIX + PART);
+
+        return transactionalOperator.transactional(databaseClient.sql("SELECT pg_try_advisory_xact_lock(hashtext($1))")
+                        .bind(0, partition)
+                        .map(row -> Boolean.TRUE.equals(row.get(0, Boolean.class)))
+                        .one()
+                        .filter(Boolean::booleanValue)
+                        .flatMap(locked -> export(partition, part))
+                        .flatMap(rows -> Mono.fromCallable(() -> Files.move(part, archive,
+                                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then(databaseClient.sql("DROP TABLE " + quote(partition)).then())
+                                .thenReturn(rows)))
+                .doOnNext(rows -> log.info("Archived {} rows of partition {} to {}", rows, partition, archive))
+                .doOnError(error -> deleteQuietly(part))
+                .then();
+    }
+
+    private Mono<Long> export(String partition, Path part) {
+        Flux<String> rows = databaseClient.sql("SELECT row_to_json(t)::text FROM " + quote(partition) + " t")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(row -> row.get(0, String.class))
+                .all();
+
+        return Mono.using(() -> new ArchiveFile(part),
+                file -> rows.publishOn(Schedulers.boundedElastic(), fetchSize)
+                        .doOnNext(file::write)
+                        .count()
+                        .flatMap(count -> Mono.fromCallable(() -> {
+                            file.finish();
+                            return count;
+                        }).subscribeOn(Schedulers.boundedElastic())),
+                ArchiveFile::close);
+    }
+
+    private static YearMonth month(String table, String partition) {
+        return YearMonth.parse(partition.substring(table.length() + 1), MONTH);
+    }
+
+    // Names are matched against <table>_YYYY_MM above, quoting only guards against case folding
+    private static String quote(String identifier) {
+        return '"' + identifier + '"';
+    }
+
+    private static void deleteQuietly(Path part) {
+        try {
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            log.error("Could not delete partial archive {}", part, e);
+        }
+    }
+
+    private record Partition(String name, boolean attached, boolean detachPending) {
+    }
+
+    /**
+     * Gzipped lines on a channel that is forced to disk by {@link #finish()}.
+     */
+    private static final class ArchiveFile implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final GZIPOutputStream gzip;
+        private final BufferedWriter writer;
+
+        ArchiveFile(Path path) throws IOException {
+            Files.createDirectories(path.getParent());
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.gzip = new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            this.writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        void write(String line) {
+            try {
+                writer.write(line);
+                writer.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            writer.flush();
+            gzip.finish();
+            channel.force(true);
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Closing archive file failed: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.payment.service;
 
 import com.payment.dto.PaymentRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import java.util.UUID;
 
 @Slf4j
 @Service
@@ -20,10 +22,14 @@ public class PaymentProviderService {
     @Value("${payment.providers.cashfree.secret-key}")
     private String cashfreeSecretKey;
 
-    private final WebClient webClient;
+    // Separate pools, so one slow provider cannot starve the other
+    private final WebClient stripeWebClient;
+    private final WebClient cashfreeWebClient;
 
-    public PaymentProviderService(WebClient webClient) {
-        this.webClient = webClient;
+    public PaymentProviderService(@Qualifier("stripeWebClient") WebClient stripeWebClient,
+                                  @Qualifier("cashfreeWebClient") WebClient cashfreeWebClient) {
+        this.stripeWebClient = stripeWebClient;
+        this.cashfreeWebClient = cashfreeWebClient;
     }
 
     public Mono<PaymentLink> generatePaymentLink(PaymentRequest request) {
@@ -39,14 +45,14 @@ public class PaymentProviderService {
     // STRIPE INTEGRATION
     // =================================================================================
     private Mono<PaymentLink> generateStripeLink(PaymentRequest request) {
-        log.info("Generating Stripe payment link for amount: {}", request.getAmount());
+        log.debug("Generating Stripe payment link for amount: {}", request.getAmount());
 
         // In a real production scenario, you would make a POST request to:
         // https://api.stripe.com/v1/checkout/sessions
         // Headers: Authorization: Bearer <stripeApiKey>
 
         // Simulating a successful response for functionality testing
-        String orderId = "stripe_ord_" + System.currentTimeMillis();
+        String orderId = "stripe_ord_" + UUID.randomUUID();
         return Mono.just(PaymentLink.builder()
                 .orderId(orderId)
                 .paymentUrl("https://checkout.stripe.com/pay/" + orderId + "?simulated=true")
@@ -58,14 +64,14 @@ public class PaymentProviderService {
     // CASHFREE INTEGRATION
     // =================================================================================
     private Mono<PaymentLink> generateCashfreeLink(PaymentRequest request) {
-        log.info("Generating Cashfree payment link for amount: {}", request.getAmount());
+        log.debug("Generating Cashfree payment link for amount: {}", request.getAmount());
 
         // In a real production scenario, you would make a POST request to:
         // https://sandbox.cashfree.com/pg/orders
         // Headers: x-client-id: <cashfreeAppId>, x-client-secret: <cashfreeSecretKey>
 
         // Simulating a successful response for functionality testing
-        String orderId = "cashfree_ord_" + System.currentTimeMillis();
+        String orderId = "cashfree_ord_" + UUID.randomUUID();
         return Mono.just(PaymentLink.builder()
                 .orderId(orderId)
                 .paymentUrl("https://sandbox.cashfree.com/pay/" + orderId + "?simulated=true")
@@ -77,7 +83,7 @@ public class PaymentProviderService {
     // VERIFICATION LOGIC
     // =================================================================================
     public Mono<VerificationResult> verifyTransaction(String providerOrderId, String transactionId) {
-        log.info("Verifying transaction with provider order: {}", providerOrderId);
+        log.debug("Verifying transaction with provider order: {}", providerOrderId);
 
         if (providerOrderId.startsWith("stripe_")) {
             return verifyStripeTransaction(providerOrderId, transactionId);
@@ -91,8 +97,20 @@ public class PaymentProviderService {
                 .build());
     }
 
+    /**
+     * The provider that issued an order id, {@code null} when the id has neither provider's prefix.
+     */
+    static String providerOf(String providerOrderId) {
+        if (providerOrderId.startsWith("stripe_")) {
+            return "STRIPE";
+        } else if (providerOrderId.startsWith("cashfree_")) {
+            return "CASHFREE";
+        }
+        return null;
+    }
+
     private Mono<VerificationResult> verifyStripeTransaction(String orderId, String transactionId) {
-        log.info("Verifying Stripe transaction. Order: {}, Txn: {}", orderId, transactionId);
+        log.debug("Verifying Stripe transaction. Order: {}, Txn: {}", orderId, transactionId);
         // In production: Call https://api.stripe.com/v1/payment_intents/{id}
         return Mono.just(VerificationResult.builder()
                 .successful(true)
@@ -101,7 +119,7 @@ public class PaymentProviderService {
     }
 
     private Mono<VerificationResult> verifyCashfreeTransaction(String orderId, String transactionId) {
-        log.info("Verifying Cashfree transaction. Order: {}, Txn: {}", orderId, transactionId);
+        log.debug("Verifying Cashfree transaction. Order: {}, Txn: {}", orderId, transactionId);
         // In production: Call https://sandbox.cashfree.com/pg/orders/{order_id}
         return Mono.just(VerificationResult.builder()
                 .successful(true)
@@ -1,162 +1,364 @@
 package com.payment.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.dto.BatchPaymentResult;
 import com.payment.dto.PaymentRequest;
 import com.payment.dto.PaymentResponse;
 import com.payment.entity.Payment;
+import com.payment.logging.CorrelationId;
+import com.payment.logging.LogRateLimiter;
 import com.payment.repository.PaymentRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 public class PaymentService {
 
+    static final int MAX_BULK_STATUS_IDS = 1000;
+
+    // Lines on every request get through once a second; failures are left to the controllers, which log each once
+    private static final LogRateLimiter INITIATE_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+    private static final LogRateLimiter SAVED_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+    private static final LogRateLimiter VERIFY_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+    private static final LogRateLimiter STATUS_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+
     private final PaymentRepository paymentRepository;
     private final WebClient webClient;
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final StatusCache paymentStatusCache;
     private final PaymentProviderService paymentProviderService;
     private final KafkaEventProducer kafkaEventProducer;
     private final JobServiceClient jobServiceClient;
     // Removed JwtService dependency
     private final IdempotencyService idempotencyService;
-    private final ObjectMapper objectMapper;
+    private final ProviderOrderIndex providerOrderIndex;
+    private final TransactionalOperator transactionalOperator;
+    private final StageMetrics stageMetrics;
+    private final int batchConcurrency;
+    private final int batchInsertSize;
+    private final Duration batchInsertWindow;
+    private final Duration orderLookupWindow;
 
     @Autowired
     public PaymentService(PaymentRepository paymentRepository,
                           WebClient webClient,
-                          @Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate, // Added Qualifier to fix startup error
+                          @Qualifier("paymentStatusCache") StatusCache paymentStatusCache,
                           PaymentProviderService paymentProviderService,
                           KafkaEventProducer kafkaEventProducer,
                           JobServiceClient jobServiceClient,
                           // JwtService removed from constructor
                           IdempotencyService idempotencyService,
-                          ObjectMapper objectMapper) {
+                          ProviderOrderIndex providerOrderIndex,
+                          TransactionalOperator transactionalOperator,
+                          StageMetrics stageMetrics,
+                          @Value("${payment.batch.concurrency:16}") int batchConcurrency,
+                          @Value("${payment.batch.insert-size:100}") int batchInsertSize,
+                          @Value("${payment.batch.insert-window:50ms}") Duration batchInsertWindow,
+                          @Value("${payment.partitions.order-lookup-window:90d}") Duration orderLookupWindow) {
         this.paymentRepository = paymentRepository;
         this.webClient = webClient;
-        this.redisTemplate = redisTemplate;
+        this.paymentStatusCache = paymentStatusCache;
         this.paymentProviderService = paymentProviderService;
         this.kafkaEventProducer = kafkaEventProducer;
         this.jobServiceClient = jobServiceClient;
         this.idempotencyService = idempotencyService;
-        this.objectMapper = objectMapper;
+        this.providerOrderIndex = providerOrderIndex;
+        this.transactionalOperator = transactionalOperator;
+        this.stageMetrics = stageMetrics;
+        this.batchConcurrency = batchConcurrency;
+        this.batchInsertSize = batchInsertSize;
+        this.batchInsertWindow = batchInsertWindow;
+        this.orderLookupWindow = orderLookupWindow;
     }
 
     public Mono<PaymentResponse> initiatePayment(PaymentRequest request, String token, String idempotencyKey) {
-        log.info("Initiating payment for job: {}, user: {}", request.getJobId(), request.getUserId());
+        INITIATE_LOGS.atInfo(log)
+                .addKeyValue("jobId", request.getJobId())
+                .addKeyValue("userId", request.getUserId())
+                .log("Initiating payment");
+
+        // JWT Validation REMOVED - Proceeding directly to Job Validation
+
+        String provider = request.getPaymentProvider();
+        Mono<PaymentResponse> createPayment = stageMetrics.time(StageMetrics.INITIATE, StageMetrics.JOB_VALIDATION, provider,
+                        Mono.defer(() -> jobServiceClient.validateJob(request.getJobId())))
+                .filter(valid -> valid)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Job validation failed")))
+                .then(stageMetrics.time(StageMetrics.INITIATE, StageMetrics.PROVIDER, provider,
+                        Mono.defer(() -> paymentProviderService.generatePaymentLink(request))))
+                .flatMap(paymentLink -> stageMetrics.time(StageMetrics.INITIATE, StageMetrics.DB, provider,
+                                paymentRepository.save(buildPayment(request, paymentLink)))
+                        .flatMap(savedPayment -> {
+                            SAVED_LOGS.atInfo(log).addKeyValue("paymentId", savedPayment.getId()).log("Payment saved");
+                            PaymentResponse response = toResponse(savedPayment, paymentLink);
+                            return stageMetrics.time(StageMetrics.INITIATE, StageMetrics.CACHE, provider, savedPayment.getId(),
+                                            paymentStatusCache.put(savedPayment.getId(), savedPayment.getStatus())
+                                                    .then(providerOrderIndex.put(savedPayment.getProviderOrderId(), savedPayment.getId())))
+                                    .thenReturn(response);
+                        }));
 
-        // 1. Idempotency Check
-        Mono<Void> idempotencyCheck = (idempotencyKey != null)
-                ? idempotencyService.checkIdempotency(idempotencyKey)
-                .filter(exists -> exists)
-                .flatMap(exists -> Mono.error(new IllegalArgumentException("Duplicate request")))
-                .then()
-                : Mono.empty();
+        // Retries with the same key replay the stored response instead of creating a second payment
+        Mono<PaymentResponse> result = (idempotencyKey != null)
+                ? idempotencyService.executeOnce(idempotencyKey, PaymentResponse.class, () -> createPayment)
+                : createPayment;
 
-        // 2. JWT Validation REMOVED - Proceeding directly to Job Validation
+        return stageMetrics.time(StageMetrics.INITIATE, StageMetrics.TOTAL, provider,
+                total -> result.doOnNext(response -> total.paymentId(response.getId())));
+    }
 
-        return idempotencyCheck
-                .then(jobServiceClient.validateJob(request.getJobId()))
+    /**
+     * Initiates one payment per request. Items are validated concurrently, inserted with
+     * multi-row INSERTs and reported individually as they complete, so a bad item only
+     * fails its own result.
+     */
+    public Flux<BatchPaymentResult> initiatePaymentBatch(Flux<PaymentRequest> requests, String token) {
+        return requests.index()
+                .flatMap(item -> preparePayment(item.getT1(), item.getT2()), batchConcurrency)
+                .bufferTimeout(batchInsertSize, batchInsertWindow)
+                .concatMap(this::insertPreparedBatch);
+    }
+
+    private Mono<PreparedPayment> preparePayment(long index, PaymentRequest request) {
+        String idempotencyKey = request.getIdempotencyKey();
+        Mono<PreparedPayment> prepare = Mono.defer(() -> jobServiceClient.validateJob(request.getJobId()))
                 .filter(valid -> valid)
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Job validation failed")))
-                .then(paymentProviderService.generatePaymentLink(request))
-                .flatMap(paymentLink -> {
-                    Payment payment = Payment.builder()
-                            .jobId(request.getJobId())
-                            .userId(request.getUserId())
-                            .labourId(request.getLabourId())
-                            .amount(request.getAmount())
-                            .currency("INR")
-                            .paymentMethod(request.getPaymentMethod())
-                            .paymentProvider(request.getPaymentProvider())
-                            .providerOrderId(paymentLink.getOrderId())
-                            .status("PENDING")
-                            .createdAt(LocalDateTime.now())
-                            .updatedAt(LocalDateTime.now())
-                            .build();
-
-                    return paymentRepository.save(payment)
-                            .flatMap(savedPayment -> {
-                                log.info("Payment saved with id: {}", savedPayment.getId());
-                                PaymentResponse response = PaymentResponse.builder()
-                                        .id(savedPayment.getId())
-                                        .jobId(savedPayment.getJobId())
-                                        .userId(savedPayment.getUserId())
-                                        .labourId(savedPayment.getLabourId())
-                                        .amount(savedPayment.getAmount())
-                                        .status(savedPayment.getStatus())
-                                        .paymentLink(paymentLink.getPaymentUrl())
-                                        .createdAt(savedPayment.getCreatedAt())
-                                        .build();
-
-                                Mono<Void> cacheAndIdempotency = cachePaymentStatus(savedPayment.getId().toString(), "PENDING");
-
-                                if (idempotencyKey != null) {
-                                    cacheAndIdempotency = cacheAndIdempotency.then(
-                                            idempotencyService.saveIdempotencyKey(idempotencyKey, objectMapper.valueToTree(response))
-                                                    .then()
-                                    );
-                                }
-
-                                return cacheAndIdempotency.thenReturn(response);
-                            });
-                })
-                .doOnError(error -> log.error("Error initiating payment", error));
+                .then(Mono.defer(() -> paymentProviderService.generatePaymentLink(request)))
+                .map(paymentLink -> new PreparedPayment(index, idempotencyKey, buildPayment(request, paymentLink), paymentLink, null));
+
+        if (idempotencyKey != null) {
+            prepare = idempotencyService.claim(idempotencyKey, PaymentResponse.class)
+                    .map(replayed -> new PreparedPayment(index, idempotencyKey, null, null, succeeded(index, idempotencyKey, replayed)))
+                    .switchIfEmpty(prepare.onErrorResume(error -> idempotencyService.release(idempotencyKey).then(Mono.error(error))));
+        }
+
+        return prepare.onErrorResume(error -> failed(index, idempotencyKey, error)
+                .map(result -> new PreparedPayment(index, idempotencyKey, null, null, result)));
+    }
+
+    private Flux<BatchPaymentResult> insertPreparedBatch(List<PreparedPayment> batch) {
+        List<BatchPaymentResult> completed = new ArrayList<>();
+        List<PreparedPayment> prepared = new ArrayList<>(batch.size());
+        for (PreparedPayment item : batch) {
+            if (item.result() != null) {
+                completed.add(item.result());
+            } else {
+                prepared.add(item);
+            }
+        }
+
+        Flux<PreparedPayment> inserted = insertPayments(prepared)
+                // One bad row fails the whole statement, so fall back to row-by-row inserts
+                .onErrorResume(error -> Flux.fromIterable(prepared)
+                        .concatMap(item -> insertPayments(List.of(item))
+                                .onErrorResume(rowError -> releaseBatchItem(item)
+                                        .then(failed(item.index(), item.idempotencyKey(), rowError))
+                                        .map(result -> new PreparedPayment(item.index(), item.idempotencyKey(),
+                                                null, null, result)))));
+
+        return Flux.fromIterable(completed)
+                .concatWith(inserted.flatMap(item -> {
+                    if (item.result() != null) {
+                        return Mono.just(item.result());
+                    }
+                    PaymentResponse response = toResponse(item.payment(), item.paymentLink());
+                    Mono<Void> record = paymentStatusCache.put(item.payment().getId(), item.payment().getStatus())
+                            .then(providerOrderIndex.put(item.payment().getProviderOrderId(), item.payment().getId()))
+                            // The payment row exists, so the item still succeeded
+                            .onErrorResume(error -> CorrelationId.logError(log, "Failed to record batch item after insert",
+                                    error, "index", item.index()));
+                    if (item.idempotencyKey() != null) {
+                        record = record.then(idempotencyService.complete(item.idempotencyKey(), response));
+                    }
+                    return record.thenReturn(succeeded(item.index(), item.idempotencyKey(), response));
+                }));
+    }
+
+    private Flux<PreparedPayment> insertPayments(List<PreparedPayment> prepared) {
+        if (prepared.isEmpty()) {
+            return Flux.empty();
+        }
+        List<Payment> payments = new ArrayList<>(prepared.size());
+        for (PreparedPayment item : prepared) {
+            payments.add(item.payment());
+        }
+        return paymentRepository.insertAll(payments)
+                .thenMany(Flux.fromIterable(prepared));
+    }
+
+    private Mono<Void> releaseBatchItem(PreparedPayment item) {
+        return item.idempotencyKey() != null ? idempotencyService.release(item.idempotencyKey()) : Mono.empty();
+    }
+
+    private BatchPaymentResult succeeded(long index, String idempotencyKey, PaymentResponse response) {
+        return BatchPaymentResult.builder()
+                .index(index)
+                .idempotencyKey(idempotencyKey)
+                .success(true)
+                .payment(response)
+                .build();
+    }
+
+    // Rejected items are reported to the caller only, the rest are also logged
+    private Mono<BatchPaymentResult> failed(long index, String idempotencyKey, Throwable error) {
+        boolean clientError = error instanceof IllegalArgumentException || error instanceof IllegalStateException;
+        BatchPaymentResult result = BatchPaymentResult.builder()
+                .index(index)
+                .idempotencyKey(idempotencyKey)
+                .success(false)
+                .error(clientError ? error.getMessage() : "Internal error")
+                .build();
+        return clientError
+                ? Mono.just(result)
+                : CorrelationId.logError(log, "Error initiating payment for batch item", error, "index", index).thenReturn(result);
+    }
+
+    private Payment buildPayment(PaymentRequest request, PaymentLink paymentLink) {
+        LocalDateTime now = LocalDateTime.now();
+        return Payment.builder()
+                .jobId(request.getJobId())
+                .userId(request.getUserId())
+                .labourId(request.getLabourId())
+                .amount(request.getAmount())
+                .currency("INR")
+                .paymentMethod(request.getPaymentMethod())
+                .paymentProvider(request.getPaymentProvider())
+                .providerOrderId(paymentLink.getOrderId())
+                .status("PENDING")
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    private PaymentResponse toResponse(Payment payment, PaymentLink paymentLink) {
+        return PaymentResponse.builder()
+                .id(payment.getId())
+                .jobId(payment.getJobId())
+                .userId(payment.getUserId())
+                .labourId(payment.getLabourId())
+                .amount(payment.getAmount())
+                .status(payment.getStatus())
+                .paymentLink(paymentLink.getPaymentUrl())
+                .createdAt(payment.getCreatedAt())
+                .build();
     }
 
     public Mono<Void> verifyPayment(String providerOrderId, String transactionId) {
-        log.info("Verifying payment for provider order: {}", providerOrderId);
+        VERIFY_LOGS.atInfo(log).addKeyValue("providerOrderId", providerOrderId).log("Verifying payment");
 
-        return paymentProviderService.verifyTransaction(providerOrderId, transactionId)
+        String provider = PaymentProviderService.providerOf(providerOrderId);
+        Mono<Void> verify = stageMetrics.time(StageMetrics.VERIFY, StageMetrics.PROVIDER, provider,
+                        paymentProviderService.verifyTransaction(providerOrderId, transactionId))
                 .flatMap(verificationResult -> {
                     String status = verificationResult.isSuccessful() ? "SUCCESS" : "FAILED";
 
-                    return paymentRepository.findByProviderOrderId(providerOrderId)
-                            .flatMap(payment -> {
-                                payment.setStatus(status);
-                                payment.setUpdatedAt(LocalDateTime.now());
-                                return paymentRepository.save(payment);
+                    // The status change and its events commit together, the cache follows the commit
+                    // The lookup counts as answered by Redis unless it falls through to the database
+                    return stageMetrics.time(StageMetrics.VERIFY, StageMetrics.LOOKUP, provider, stage -> {
+                                stage.cacheTier("redis");
+                                return providerOrderIndex.resolve(providerOrderId, orderId -> {
+                                    stage.cacheTier("db");
+                                    return findPaymentId(orderId);
+                                });
                             })
-                            .flatMap(updatedPayment ->
-                                    redisTemplate.opsForValue()
-                                            .set(updatedPayment.getId().toString(), status, Duration.ofHours(24))
-                                            .then(Mono.just(updatedPayment))
-                            )
-                            .flatMap(updatedPayment -> {
-                                if ("SUCCESS".equals(status)) {
-                                    return kafkaEventProducer.publishPaymentSuccessEvent(updatedPayment);
-                                } else {
-                                    return kafkaEventProducer.publishPaymentFailureEvent(updatedPayment);
-                                }
-                            });
+                            .flatMap(paymentId -> stageMetrics.time(StageMetrics.VERIFY, StageMetrics.DB, provider, paymentId,
+                                    transactionalOperator.transactional(paymentRepository.updateStatusIfChanged(paymentId, status, LocalDateTime.now())
+                                            .flatMap(updatedPayment -> ("SUCCESS".equals(status)
+                                                    ? kafkaEventProducer.publishPaymentSuccessEvent(updatedPayment)
+                                                    : kafkaEventProducer.publishPaymentFailureEvent(updatedPayment))
+                                                    .thenReturn(updatedPayment)))))
+                            .flatMap(updatedPayment -> stageMetrics.time(StageMetrics.VERIFY, StageMetrics.CACHE, provider, updatedPayment.getId(),
+                                    paymentStatusCache.update(updatedPayment.getId(), status)));
                 });
+        return stageMetrics.time(StageMetrics.VERIFY, StageMetrics.TOTAL, provider, verify);
+    }
+
+    /**
+     * Verifies several orders with their providers, then applies the resulting status changes
+     * in one transaction. Payments already in the verified status are left alone, so repeated
+     * notifications for an order cost no write and publish no event. An order its provider could
+     * not be asked about is left out and does not hold back the others.
+     *
+     * @param transactionIds transaction id by provider order id
+     * @return the provider order ids that could not be verified, to be retried by the caller
+     */
+    public Mono<Set<String>> verifyPayments(Map<String, String> transactionIds) {
+        return Mono.defer(() -> {
+            Set<String> unverified = ConcurrentHashMap.newKeySet();
+            return Flux.fromIterable(transactionIds.entrySet())
+                    .flatMap(order -> paymentProviderService.verifyTransaction(order.getKey(), order.getValue())
+                            .map(result -> Map.entry(order.getKey(), result.isSuccessful() ? "SUCCESS" : "FAILED"))
+                            .onErrorResume(error -> {
+                                log.atWarn()
+                                        .addKeyValue("providerOrderId", order.getKey())
+                                        .addKeyValue("error", error.toString())
+                                        .log("Could not verify order with its provider");
+                                unverified.add(order.getKey());
+                                return Mono.empty();
+                            }), batchConcurrency)
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                    .flatMap(this::applyStatuses)
+                    .thenReturn(unverified);
+        });
+    }
+
+    private Mono<Void> applyStatuses(Map<String, String> statuses) {
+        if (statuses.isEmpty()) {
+            return Mono.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Resolved to payment ids first, so each update reads only the partitions around its id
+        return Flux.fromIterable(statuses.entrySet())
+                .flatMap(order -> providerOrderIndex.resolve(order.getKey(), this::findPaymentId)
+                        .map(paymentId -> Map.entry(paymentId, order.getValue())), batchConcurrency)
+                .collectList()
+                .flatMap(resolved -> transactionalOperator.transactional(Flux.fromIterable(resolved)
+                        .concatMap(payment -> paymentRepository.updateStatusIfChanged(payment.getKey(), payment.getValue(), now))
+                        .concatMap(updatedPayment -> ("SUCCESS".equals(updatedPayment.getStatus())
+                                ? kafkaEventProducer.publishPaymentSuccessEvent(updatedPayment)
+                                : kafkaEventProducer.publishPaymentFailureEvent(updatedPayment))
+                                .thenReturn(updatedPayment))
+                        .collectList()))
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(updatedPayment -> paymentStatusCache.update(updatedPayment.getId(), updatedPayment.getStatus()))
+                .then();
+    }
+
+    // Orders older than payment.partitions.order-lookup-window are no longer verified
+    private Mono<UUID> findPaymentId(String providerOrderId) {
+        return paymentRepository.findIdByProviderOrderId(providerOrderId, LocalDateTime.now().minus(orderLookupWindow));
     }
 
     public Mono<String> getPaymentStatus(UUID paymentId) {
-        log.info("Fetching payment status for id: {}", paymentId);
+        STATUS_LOGS.atInfo(log).addKeyValue("paymentId", paymentId).log("Fetching payment status");
 
-        return redisTemplate.opsForValue().get(paymentId.toString())
-                .switchIfEmpty(
-                        paymentRepository.findById(paymentId)
-                                .flatMap(payment ->
-                                        cachePaymentStatus(paymentId.toString(), payment.getStatus())
-                                                .thenReturn(payment.getStatus())
-                                )
-                );
+        return paymentStatusCache.get(paymentId, id -> paymentRepository.findStatusById(id));
     }
 
-    private Mono<Void> cachePaymentStatus(String paymentId, String status) {
-        return redisTemplate.opsForValue()
-                .set(paymentId, status, Duration.ofHours(24))
-                .then();
+    public Mono<Map<UUID, String>> getPaymentStatuses(List<UUID> paymentIds) {
+        if (paymentIds.size() > MAX_BULK_STATUS_IDS) {
+            return Mono.error(new IllegalArgumentException("At most " + MAX_BULK_STATUS_IDS + " ids per request"));
+        }
+        return paymentStatusCache.getAll(paymentIds, paymentRepository::findStatusesByIds);
+    }
+
+    // result is set when the item needs no insert: it failed early or replays a completed idempotency key
+    private record PreparedPayment(long index, String idempotencyKey, Payment payment, PaymentLink paymentLink,
+                                   BatchPaymentResult result) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.payment.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pushes payment status transitions to connected clients. The node holds one subscription
+ * to the status channel that {@code verifyPayment} publishes on and hands each message only
+ * to the watchers of that payment, so idle watchers cost a map entry and a small queue.
+ */
+@Slf4j
+@Service
+public class PaymentStatusStreamService {
+
+    private static final Set<String> TERMINAL_STATUSES = Set.of("SUCCESS", "FAILED");
+    // Statuses change a handful of times per payment, anything beyond this is a stuck client
+    private static final int WATCHER_QUEUE_SIZE = 16;
+
+    private final PaymentService paymentService;
+    private final StatusCache paymentStatusCache;
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+    private final Duration maxDuration;
+    private final ConcurrentMap<UUID, Set<Sinks.Many<String>>> watchers = new ConcurrentHashMap<>();
+    private Disposable subscription;
+
+    @Autowired
+    public PaymentStatusStreamService(PaymentService paymentService,
+                                      @Qualifier("paymentStatusCache") StatusCache paymentStatusCache,
+                                      ReactiveRedisMessageListenerContainer listenerContainer,
+                                      @Value("${payment.status-stream.max-duration:30m}") Duration maxDuration) {
+        this.paymentService = paymentService;
+        this.paymentStatusCache = paymentStatusCache;
+        this.listenerContainer = listenerContainer;
+        this.maxDuration = maxDuration;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        subscription = listenerContainer.receive(ChannelTopic.of(paymentStatusCache.channel()))
+                .doOnNext(message -> dispatch(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Payment status subscription failed, retrying: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        watchers.values().forEach(sinks -> sinks.forEach(Sinks.Many::tryEmitComplete));
+    }
+
+    /**
+     * Emits the current status followed by every transition, completing after a terminal
+     * status. Completes empty when the payment does not exist.
+     */
+    public Mono<Flux<String>> watch(UUID paymentId) {
+        return Mono.defer(() -> {
+            // Register before reading the current status so a transition in between is queued, not lost
+            Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<String>get(WATCHER_QUEUE_SIZE).get());
+            register(paymentId, sink);
+
+            return paymentService.getPaymentStatus(paymentId)
+                    .map(current -> Flux.just(current)
+                            .concatWith(sink.asFlux())
+                            .distinctUntilChanged()
+                            .takeUntil(TERMINAL_STATUSES::contains)
+                            .take(maxDuration)
+                            .doFinally(signal -> unregister(paymentId, sink)))
+                    .switchIfEmpty(Mono.fromRunnable(() -> unregister(paymentId, sink)))
+                    .doOnError(error -> unregister(paymentId, sink));
+        });
+    }
+
+    public int watcherCount() {
+        return watchers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void dispatch(String message) {
+        // A batch update publishes all of its payments in one message
+        for (String entry : message.split(",")) {
+            dispatchEntry(entry);
+        }
+    }
+
+    private void dispatchEntry(String entry) {
+        int separator = entry.indexOf(':');
+        if (separator < 0) {
+            return;
+        }
+        UUID paymentId;
+        try {
+            paymentId = UUID.fromString(entry.substring(0, separator));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed payment status message: {}", entry);
+            return;
+        }
+        Set<Sinks.Many<String>> sinks = watchers.get(paymentId);
+        if (sinks != null) {
+            String status = entry.substring(separator + 1);
+            sinks.forEach(sink -> sink.tryEmitNext(status));
+        }
+    }
+
+    private void register(UUID paymentId, Sinks.Many<String> sink) {
+        watchers.compute(paymentId, (id, sinks) -> {
+            Set<Sinks.Many<String>> registered = sinks != null ? sinks : ConcurrentHashMap.newKeySet();
+            registered.add(sink);
+            return registered;
+        });
+    }
+
+    private void unregister(UUID paymentId, Sinks.Many<String> sink) {
+        watchers.computeIfPresent(paymentId, (id, sinks) -> {
+            sinks.remove(sink);
+            return sinks.isEmpty() ? null : sinks;
+        });
+    }
+}
@@ -3,54 +3,97 @@ package com.payment.service;
 import com.payment.dto.PayoutRequest;
 import com.payment.entity.Payment;
 import com.payment.entity.Payout;
+import com.payment.logging.LogRateLimiter;
+import com.payment.money.CommissionRule;
+import com.payment.money.Money;
 import com.payment.repository.PaymentRepository;
 import com.payment.repository.PayoutRepository;
 import com.payment.service.JobServiceClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
 @Service
 public class PayoutService {
 
+    // One line per second each; failed payouts are logged by PayoutController instead
+    private static final LogRateLimiter INITIATE_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+    private static final LogRateLimiter CREATED_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+    private static final LogRateLimiter STATUS_LOGS = LogRateLimiter.perInterval(Duration.ofSeconds(1));
+
     private final PayoutRepository payoutRepository;
     private final PaymentRepository paymentRepository;
-    private final KafkaEventProducer kafkaEventProducer;
     private final JobServiceClient jobServiceClient;
+    private final StatusCache payoutStatusCache;
+    private final TransactionalOperator transactionalOperator;
+    private final CommissionRule commissionRule;
+    private final StageMetrics stageMetrics;
+    private final int maxAggregatedPayments;
+    private final int jobCheckConcurrency;
 
     @Autowired
     public PayoutService(PayoutRepository payoutRepository,
                         PaymentRepository paymentRepository,
-                        KafkaEventProducer kafkaEventProducer,
-                        JobServiceClient jobServiceClient) {
+                        JobServiceClient jobServiceClient,
+                        @Qualifier("payoutStatusCache") StatusCache payoutStatusCache,
+                        TransactionalOperator transactionalOperator,
+                        CommissionRule commissionRule,
+                        StageMetrics stageMetrics,
+                        @Value("${payment.payouts.max-aggregated-payments:500}") int maxAggregatedPayments,
+                        @Value("${payment.payouts.job-check-concurrency:64}") int jobCheckConcurrency) {
         this.payoutRepository = payoutRepository;
         this.paymentRepository = paymentRepository;
-        this.kafkaEventProducer = kafkaEventProducer;
         this.jobServiceClient = jobServiceClient;
+        this.payoutStatusCache = payoutStatusCache;
+        this.transactionalOperator = transactionalOperator;
+        this.commissionRule = commissionRule;
+        this.stageMetrics = stageMetrics;
+        this.maxAggregatedPayments = maxAggregatedPayments;
+        this.jobCheckConcurrency = jobCheckConcurrency;
     }
 
+    /**
+     * Pays out one payment. The paid-out check before the job lookup only turns duplicates
+     * away early; the payout is inserted under the payment's row lock, after checking again,
+     * so neither a concurrent single payout nor an aggregated one can pay it twice.
+     */
     public Mono<Void> initiatePayoutToLabour(UUID paymentId, UUID labourId, String bankAccountRef) {
-        log.info("Initiating payout for labour: {} with payment: {}", labourId, paymentId);
+        INITIATE_LOGS.atInfo(log)
+                .addKeyValue("labourId", labourId)
+                .addKeyValue("paymentId", paymentId)
+                .log("Initiating payout");
 
-        return paymentRepository.findById(paymentId)
+        Mono<Void> initiate = stageMetrics.time(StageMetrics.PAYOUT, StageMetrics.LOOKUP, null, paymentId,
+                        paymentRepository.lookup(paymentId))
                 .flatMap(payment -> {
                     if (!"SUCCESS".equals(payment.getStatus())) {
                         return Mono.error(new IllegalStateException("Payment not successful"));
                     }
 
-                    return jobServiceClient.isJobComplete(payment.getJobId())
+                    return stageMetrics.time(StageMetrics.PAYOUT, StageMetrics.PAID_OUT_CHECK, null, paymentId,
+                                    payoutRepository.isPaymentPaidOut(payment.getId()))
+                            .flatMap(paidOut -> Boolean.TRUE.equals(paidOut)
+                                    ? Mono.error(new IllegalStateException("Payment already paid out"))
+                                    : stageMetrics.time(StageMetrics.PAYOUT, StageMetrics.JOB_COMPLETION, null, paymentId,
+                                            jobServiceClient.isJobComplete(payment.getJobId())))
                             .flatMap(isComplete -> {
                                 if (!Boolean.TRUE.equals(isComplete)) {
                                     return Mono.error(new IllegalStateException("Job is not marked as complete"));
                                 }
 
-                                BigDecimal commission = payment.getAmount().multiply(BigDecimal.valueOf(0.1));
-                                BigDecimal payoutAmount = payment.getAmount().subtract(commission);
+                                Money commission = commissionRule.commissionOn(payment.getAmount());
+                                Money payoutAmount = payment.getAmount().minus(commission);
 
                                 Payout payout = Payout.builder()
                                         .jobId(payment.getJobId())
@@ -64,32 +107,95 @@ public class PayoutService {
                                         .updatedAt(LocalDateTime.now())
                                         .build();
 
-                                return payoutRepository.save(payout)
+                                // Stays PENDING until SettlementEngine puts it in a bank file
+                                return stageMetrics.time(StageMetrics.PAYOUT, StageMetrics.DB, null, paymentId,
+                                                transactionalOperator.transactional(paymentRepository.lockUnpaidByIds(new UUID[]{paymentId})
+                                                        .next()
+                                                        .switchIfEmpty(Mono.error(new IllegalStateException("Payment already paid out")))
+                                                        .flatMap(locked -> payoutRepository.save(payout))))
                                         .flatMap(savedPayout -> {
-                                            log.info("Payout created with id: {}", savedPayout.getId());
-                                            return processBankTransfer(savedPayout)
-                                                    .flatMap(v -> kafkaEventProducer.publishPayoutSuccessEvent(savedPayout));
+                                            CREATED_LOGS.atInfo(log).addKeyValue("payoutId", savedPayout.getId()).log("Payout created");
+                                            return stageMetrics.time(StageMetrics.PAYOUT, StageMetrics.CACHE, null, paymentId,
+                                                    payoutStatusCache.put(savedPayout.getId(), savedPayout.getSettlementStatus()));
                                         });
                             });
-                })
-                .doOnError(error -> log.error("Error initiating payout", error));
+                });
+
+        return stageMetrics.time(StageMetrics.PAYOUT, StageMetrics.TOTAL, null, paymentId, initiate);
+    }
+
+    /**
+     * Pays a labourer for all their successful, unpaid payments of completed jobs with one
+     * payout, one bank transfer and one event; the payments are recorded as its items.
+     * Eligibility is decided with set-based queries and rechecked under row locks, so
+     * concurrent payouts cannot pay a payment twice.
+     */
+    public Mono<Payout> initiateAggregatedPayout(UUID labourId, String bankAccountRef) {
+        log.info("Initiating aggregated payout for labour: {}", labourId);
+
+        // Job checks go out before the transaction, so row locks are not held across HTTP calls.
+        // They run concurrently, which also lets JobServiceClient batch them
+        return paymentRepository.findUnpaidByLabourId(labourId, maxAggregatedPayments)
+                .flatMap(payment -> jobServiceClient.isJobComplete(payment.getJobId())
+                        .filter(Boolean.TRUE::equals)
+                        .map(complete -> payment.getId()), jobCheckConcurrency)
+                .collectList()
+                .flatMap(candidates -> transactionalOperator.transactional(
+                        paymentRepository.lockUnpaidByIds(candidates.toArray(UUID[]::new))
+                                .collectList()
+                                .flatMap(payments -> createAggregatedPayout(labourId, bankAccountRef, payments))))
+                .switchIfEmpty(Mono.error(new IllegalStateException("No completed, unpaid payments for labour " + labourId)))
+                .flatMap(payout -> payoutStatusCache.put(payout.getId(), payout.getSettlementStatus()).thenReturn(payout));
     }
 
-    public Mono<Void> processBankTransfer(Payout payout) {
-        log.info("Processing bank transfer for payout: {}", payout.getId());
-        
-        payout.setSettlementStatus("PROCESSED");
-        payout.setUpdatedAt(LocalDateTime.now());
-        
+    private Mono<Payout> createAggregatedPayout(UUID labourId, String bankAccountRef, List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return Mono.empty();
+        }
+        UUID[] paymentIds = new UUID[payments.size()];
+        BigDecimal[] amounts = new BigDecimal[payments.size()];
+        BigDecimal[] commissions = new BigDecimal[payments.size()];
+        Money totalAmount = Money.ZERO;
+        Money totalCommission = Money.ZERO;
+        for (int i = 0; i < payments.size(); i++) {
+            Payment payment = payments.get(i);
+            Money commission = commissionRule.commissionOn(payment.getAmount());
+            Money amount = payment.getAmount().minus(commission);
+            paymentIds[i] = payment.getId();
+            amounts[i] = amount.toBigDecimal();
+            commissions[i] = commission.toBigDecimal();
+            totalAmount = totalAmount.plus(amount);
+            totalCommission = totalCommission.plus(commission);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Payout payout = Payout.builder()
+                .labourId(labourId)
+                .amount(totalAmount)
+                .commission(totalCommission)
+                .settlementStatus("PENDING")
+                .bankAccountRef(bankAccountRef)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
         return payoutRepository.save(payout)
-                .then();
+                .flatMap(saved -> payoutRepository.insertItems(saved.getId(), paymentIds, amounts, commissions)
+                        .doOnNext(items -> log.info("Aggregated payout {} created for {} payments", saved.getId(), items))
+                        .thenReturn(saved));
     }
 
     public Mono<String> getPayoutStatus(UUID payoutId) {
-        log.info("Fetching payout status for id: {}", payoutId);
+        STATUS_LOGS.atInfo(log).addKeyValue("payoutId", payoutId).log("Fetching payout status");
 
-        return payoutRepository.findById(payoutId)
-                .map(Payout::getSettlementStatus)
+        return payoutStatusCache.get(payoutId, id -> payoutRepository.findStatusById(id))
                 .switchIfEmpty(Mono.error(new IllegalStateException("Payout not found")));
     }
+
+    public Mono<Map<UUID, String>> getPayoutStatuses(List<UUID> payoutIds) {
+        if (payoutIds.size() > PaymentService.MAX_BULK_STATUS_IDS) {
+            return Mono.error(new IllegalArgumentException("At most " + PaymentService.MAX_BULK_STATUS_IDS + " ids per request"));
+        }
+        return payoutStatusCache.getAll(payoutIds, payoutRepository::findStatusesByIds);
+    }
 }
@@ -0,0 +1,20 @@
+package com.payment.service;
+
+import com.payment.money.Money;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A notification waiting in {@link NotificationCoalescer}, kept as its template arguments
+ * so the message is only rendered once it is flushed.
+ */
+record PendingNotification(NotificationTemplate template,
+                           String username,
+                           Money amount,
+                           UUID jobId,
+                           Instant timestamp) {
+
+    void appendMessageTo(StringBuilder out) {
+        template.message().appendTo(out, amount, jobId);
+    }
+}
@@ -0,0 +1,79 @@
+package com.payment.service;
+
+import com.payment.profiling.FlightEvents;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Maps provider order ids to payment ids in Redis, written when the payment is created, so
+ * verification can address the payment row by primary key without reading it first.
+ * A missing entry falls back to the indexed {@code provider_order_id} lookup and is refilled.
+ */
+@Slf4j
+@Service
+public class ProviderOrderIndex {
+
+    private static final String KEY_PREFIX = "payment:order:";
+    private static final String KEYSPACE = "provider_order";
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Duration ttl;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public ProviderOrderIndex(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${payment.provider-order-index.ttl:7d}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+        this.hits = redisLookups(meterRegistry, KEYSPACE, "hit");
+        this.misses = redisLookups(meterRegistry, KEYSPACE, "miss");
+    }
+
+    /**
+     * Counter of Redis lookups in {@code keyspace}, shared by the components that read Redis
+     * directly; the status caches count theirs as {@code payment.status.cache}.
+     */
+    static Counter redisLookups(MeterRegistry meterRegistry, String keyspace, String result) {
+        return Counter.builder("payment.redis.lookups")
+                .description("Redis lookups per keyspace")
+                .tag("keyspace", keyspace)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> put(String providerOrderId, UUID paymentId) {
+        return FlightEvents.redis("SET", KEYSPACE, redisTemplate.opsForValue()
+                        .set(KEY_PREFIX + providerOrderId, paymentId.toString(), ttl))
+                .then();
+    }
+
+    public Mono<UUID> resolve(String providerOrderId, Function<String, Mono<UUID>> loader) {
+        return FlightEvents.redis("GET", KEYSPACE, redisTemplate.opsForValue().get(KEY_PREFIX + providerOrderId))
+                .map(UUID::fromString)
+                .doOnNext(paymentId -> hits.increment())
+                .onErrorResume(error -> {
+                    // Redis is only a shortcut, the database can still answer
+                    log.warn("Provider order lookup in Redis failed for {}: {}", providerOrderId, error.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    misses.increment();
+                    return loader.apply(providerOrderId)
+                            .flatMap(paymentId -> put(providerOrderId, paymentId)
+                                    .onErrorResume(error -> Mono.empty())
+                                    .thenReturn(paymentId));
+                }));
+    }
+}
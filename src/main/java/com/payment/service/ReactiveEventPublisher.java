@@ -0,0 +1,51 @@
+package com.payment.service;
+
+import com.payment.event.BinaryEventCodec;
+import com.payment.profiling.FlightEvents;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends pre-encoded events through the reactive {@link KafkaSender}. The returned
+ * {@code Mono} completes only once the broker acknowledged the record and fails if it did not.
+ */
+@Service
+public class ReactiveEventPublisher {
+
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String SCHEMA_VERSION_HEADER = "schema-version";
+
+    private static final byte[] BINARY_SCHEMA_VERSION =
+            String.valueOf(BinaryEventCodec.SCHEMA_VERSION).getBytes(StandardCharsets.UTF_8);
+
+    private final KafkaSender<String, byte[]> kafkaSender;
+
+    @Autowired
+    public ReactiveEventPublisher(KafkaSender<String, byte[]> kafkaSender) {
+        this.kafkaSender = kafkaSender;
+    }
+
+    public Mono<RecordMetadata> send(String topic, String key, byte[] payload, String contentType, String eventType) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, payload);
+        Headers headers = record.headers();
+        headers.add(CONTENT_TYPE_HEADER, contentType.getBytes(StandardCharsets.UTF_8));
+        headers.add(EVENT_TYPE_HEADER, eventType.getBytes(StandardCharsets.UTF_8));
+        if (BinaryEventCodec.CONTENT_TYPE.equals(contentType)) {
+            headers.add(SCHEMA_VERSION_HEADER, BINARY_SCHEMA_VERSION);
+        }
+        return FlightEvents.kafka(topic, eventType, payload.length,
+                kafkaSender.send(Mono.just(SenderRecord.<String, byte[], Void>create(record, null)))
+                        .single()
+                        .flatMap(result -> result.exception() != null
+                                ? Mono.<RecordMetadata>error(result.exception())
+                                : Mono.just(result.recordMetadata())));
+    }
+}
@@ -0,0 +1,261 @@
+package com.payment.service;
+
+import com.payment.dto.StatusView;
+import com.payment.entity.Payout;
+import com.payment.money.Money;
+import com.payment.profiling.FlightEvents;
+import com.payment.repository.PayoutRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Settles {@code PENDING} payouts in batches. Each batch is claimed with
+ * {@code FOR UPDATE SKIP LOCKED}, so any number of workers on any number of nodes take
+ * disjoint rows, written to one bank file per bank, and marked {@code PROCESSED} in the
+ * claiming transaction along with its events. Payouts whose {@code bank_account_ref} is not
+ * {@code IFSC:account} are marked {@code FAILED}.
+ *
+ * <p>Files are written as {@code .part} and renamed once the batch committed, so the bank
+ * upload only ever sees files whose payouts are recorded as settled. A rolled back batch
+ * deletes its files and its payouts are claimed again by a later run.
+ *
+ * <pre>
+ * H|batch id|bank|yyyyMMdd|record count|total amount
+ * D|payout id|NEFT or IMPS|IFSC|account|amount|labour id
+ * T|record count|total amount
+ * </pre>
+ */
+@Slf4j
+@Service
+public class SettlementEngine {
+
+    private static final Pattern IFSC = Pattern.compile("[A-Z]{4}0[A-Z0-9]{6}");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter BATCH_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String PART = ".part";
+
+    private final PayoutRepository payoutRepository;
+    private final KafkaEventProducer kafkaEventProducer;
+    private final StatusCache payoutStatusCache;
+    private final TransactionalOperator transactionalOperator;
+    private final Path directory;
+    private final int batchSize;
+    private final int workers;
+    private final Money impsLimit;
+
+    @Autowired
+    public SettlementEngine(PayoutRepository payoutRepository,
+                            KafkaEventProducer kafkaEventProducer,
+                            @Qualifier("payoutStatusCache") StatusCache payoutStatusCache,
+                            TransactionalOperator transactionalOperator,
+                            @Value("${payment.settlement.directory:settlement-files}") Path directory,
+                            @Value("${payment.settlement.batch-size:5000}") int batchSize,
+                            @Value("${payment.settlement.workers:4}") int workers,
+                            @Value("${payment.settlement.imps-limit:500000}") BigDecimal impsLimit) {
+        this.payoutRepository = payoutRepository;
+        this.kafkaEventProducer = kafkaEventProducer;
+        this.payoutStatusCache = payoutStatusCache;
+        this.transactionalOperator = transactionalOperator;
+        this.directory = directory;
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.impsLimit = Money.of(impsLimit);
+    }
+
+    /**
+     * Settles until no pending payouts are left. The next run starts
+     * {@code payment.settlement.interval-ms} after this one completed.
+     */
+    @Scheduled(fixedDelayString = "${payment.settlement.interval-ms:60000}")
+    public Mono<Void> settle() {
+        return Flux.range(0, workers)
+                .flatMap(worker -> settleBatch()
+                        .expand(settled -> settled == batchSize ? settleBatch() : Mono.empty()))
+                .reduce(0L, Long::sum)
+                .doOnNext(settled -> {
+                    if (settled > 0) {
+                        log.info("Settled {} payouts", settled);
+                    }
+                })
+                .onErrorResume(error -> {
+                    log.error("Settlement run failed, retrying on the next run", error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Claims, writes and marks one batch, returning how many payouts it claimed.
+     */
+    public Mono<Integer> settleBatch() {
+        return FlightEvents.settlement(Mono.defer(() -> {
+            String batchId = LocalDateTime.now().format(BATCH_TIME) + "-" + UUID.randomUUID().toString().substring(0, 8);
+            List<Path> parts = new ArrayList<>();
+
+            return transactionalOperator.transactional(payoutRepository.lockPendingBatch(batchSize)
+                            .collectList()
+                            .filter(batch -> !batch.isEmpty())
+                            .flatMap(batch -> Mono.fromCallable(() -> writeFiles(batchId, batch, parts))
+                                    .subscribeOn(Schedulers.boundedElastic())
+                                    .flatMap(rejected -> mark(batchId, batch, rejected))
+                                    .thenReturn(batch)))
+                    .flatMap(batch -> {
+                        publish(parts);
+                        List<StatusView> statuses = new ArrayList<>(batch.size());
+                        for (Payout payout : batch) {
+                            statuses.add(new StatusView(payout.getId(), payout.getSettlementStatus()));
+                        }
+                        return payoutStatusCache.updateAll(statuses)
+                                .onErrorResume(error -> {
+                                    log.warn("Caching statuses of settlement batch {} failed: {}", batchId, error.getMessage());
+                                    return Mono.empty();
+                                })
+                                .then(Mono.just(batch.size()));
+                    })
+                    .doOnError(error -> discard(parts))
+                    .defaultIfEmpty(0);
+        }));
+    }
+
+    // Returns the payouts that could not be put in a file
+    private List<Payout> writeFiles(String batchId, List<Payout> batch, List<Path> parts) throws IOException {
+        Map<String, List<Payout>> byBank = new TreeMap<>();
+        List<Payout> rejected = new ArrayList<>();
+        for (Payout payout : batch) {
+            String ifsc = ifsc(payout.getBankAccountRef());
+            if (ifsc == null) {
+                rejected.add(payout);
+            } else {
+                byBank.computeIfAbsent(ifsc.substring(0, 4), bank -> new ArrayList<>()).add(payout);
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        Path dayDirectory = Files.createDirectories(directory.resolve(today.toString()));
+        for (Map.Entry<String, List<Payout>> bank : byBank.entrySet()) {
+            Path part = dayDirectory.resolve(bank.getKey() + "-" + batchId + ".txt" + PART);
+            parts.add(part);
+            writeFile(part, batchId, bank.getKey(), today, bank.getValue());
+        }
+        return rejected;
+    }
+
+    private void writeFile(Path part, String batchId, String bank, LocalDate date, List<Payout> payouts) throws IOException {
+        Money total = Money.ZERO;
+        for (Payout payout : payouts) {
+            total = total.plus(payout.getAmount());
+        }
+
+        try (BankFileWriter file = new BankFileWriter(part)) {
+            file.field("H").field(batchId).field(bank).field(date.format(FILE_DATE)).field(payouts.size()).field(total);
+            file.endRecord();
+            for (Payout payout : payouts) {
+                String ref = payout.getBankAccountRef();
+                int separator = ref.indexOf(':');
+                file.field("D")
+                        .field(payout.getId().toString())
+                        .field(payout.getAmount().compareTo(impsLimit) <= 0 ? "IMPS" : "NEFT")
+                        .field(ref.substring(0, separator))
+                        .field(ref.substring(separator + 1))
+                        .field(payout.getAmount())
+                        .field(payout.getLabourId().toString());
+                file.endRecord();
+            }
+            file.field("T").field(payouts.size()).field(total);
+            file.endRecord();
+        }
+    }
+
+    private Mono<Void> mark(String batchId, List<Payout> batch, List<Payout> rejected) {
+        LocalDateTime now = LocalDateTime.now();
+        Set<UUID> rejectedIds = new HashSet<>();
+        for (Payout payout : rejected) {
+            rejectedIds.add(payout.getId());
+        }
+        List<Payout> processed = new ArrayList<>(batch.size() - rejected.size());
+        for (Payout payout : batch) {
+            payout.setSettlementBatchId(batchId);
+            payout.setUpdatedAt(now);
+            if (rejectedIds.contains(payout.getId())) {
+                payout.setSettlementStatus("FAILED");
+            } else {
+                payout.setSettlementStatus("PROCESSED");
+                processed.add(payout);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            log.warn("Settlement batch {} rejected {} payouts without an IFSC:account bank reference", batchId, rejected.size());
+        }
+
+        return update(processed, "PROCESSED", batchId, now)
+                .then(update(rejected, "FAILED", batchId, now))
+                .then(kafkaEventProducer.publishPayoutSuccessEvents(processed))
+                .then(Flux.fromIterable(rejected).concatMap(kafkaEventProducer::publishPayoutFailureEvent).then());
+    }
+
+    private Mono<Void> update(List<Payout> payouts, String status, String batchId, LocalDateTime now) {
+        if (payouts.isEmpty()) {
+            return Mono.empty();
+        }
+        UUID[] ids = payouts.stream().map(Payout::getId).toArray(UUID[]::new);
+        return payoutRepository.updateSettlement(ids, status, batchId, now).then();
+    }
+
+    private static void publish(List<Path> parts) {
+        for (Path part : parts) {
+            String name = part.getFileName().toString();
+            try {
+                Files.move(part, part.resolveSibling(name.substring(0, name.length() - PART.length())), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The payouts are already recorded as settled, the file has to reach the bank by hand
+                log.error("Bank file {} was committed but could not be published", part, e);
+            }
+        }
+    }
+
+    private static void discard(List<Path> parts) {
+        for (Path part : parts) {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                log.error("Could not delete bank file {} of a rolled back batch", part, e);
+            }
+        }
+    }
+
+    private static String ifsc(String bankAccountRef) {
+        if (bankAccountRef == null) {
+            return null;
+        }
+        int separator = bankAccountRef.indexOf(':');
+        if (separator < 0 || separator == bankAccountRef.length() - 1) {
+            return null;
+        }
+        String ifsc = bankAccountRef.substring(0, separator);
+        return IFSC.matcher(ifsc).matches() ? ifsc : null;
+    }
+}
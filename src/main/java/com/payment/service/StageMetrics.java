@@ -0,0 +1,150 @@
+package com.payment.service;
+
+import com.payment.profiling.FlightEvents;
+import com.payment.profiling.PaymentStageEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Times the stages of payment initiation, verification and payout as the {@code payment.stage}
+ * timer, with a percentile histogram for Prometheus. A stage is timed from subscription to its
+ * terminal signal; every operation also records a {@value #TOTAL} stage spanning all of it.
+ * While a flight recording is running each stage is also emitted as a
+ * {@code com.payment.PaymentStage} event, with the payment id where the stage knows it.
+ *
+ * <p>Every tag takes a value from a fixed set, so the number of series stays bounded: operation
+ * and stage names are constants of the callers, {@code provider} is {@code stripe},
+ * {@code cashfree}, {@code other} or {@code none}, {@code outcome} is one of
+ * {@code success}, {@code empty}, {@code rejected}, {@code error} or {@code cancelled}, and
+ * {@code cache_tier} names the tier that answered a lookup stage or {@code none}.
+ */
+@Component
+public class StageMetrics {
+
+    static final String INITIATE = "initiate";
+    static final String VERIFY = "verify";
+    static final String PAYOUT = "payout";
+
+    static final String TOTAL = "total";
+    static final String JOB_VALIDATION = "job_validation";
+    static final String JOB_COMPLETION = "job_completion";
+    static final String PROVIDER = "provider";
+    static final String LOOKUP = "lookup";
+    static final String PAID_OUT_CHECK = "paid_out_check";
+    static final String DB = "db";
+    static final String CACHE = "cache";
+
+    static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration maximumExpected;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StageMetrics(MeterRegistry meterRegistry,
+                        @Value("${payment.metrics.stage-max-expected:10s}") Duration maximumExpected) {
+        this.meterRegistry = meterRegistry;
+        this.maximumExpected = maximumExpected;
+    }
+
+    public <T> Mono<T> time(String operation, String stage, String provider, Mono<T> body) {
+        return time(operation, stage, provider, current -> body);
+    }
+
+    public <T> Mono<T> time(String operation, String stage, String provider, UUID paymentId, Mono<T> body) {
+        return time(operation, stage, provider, current -> {
+            current.paymentId(paymentId);
+            return body;
+        });
+    }
+
+    /**
+     * Times the Mono built by {@code body}, which may name the cache tier that answered it
+     * and the payment it concerns through the {@link Stage} it is given.
+     */
+    public <T> Mono<T> time(String operation, String stage, String provider, Function<Stage, Mono<T>> body) {
+        return Mono.defer(() -> {
+            Stage current = new Stage();
+            PaymentStageEvent event = FlightEvents.beginStage();
+            long start = System.nanoTime();
+            return body.apply(current)
+                    .doOnNext(value -> current.emitted = true)
+                    .doOnError(error -> current.error = error)
+                    .doFinally(signal -> {
+                        String normalizedProvider = provider(provider);
+                        String outcome = outcome(signal, current);
+                        timer(operation, stage, normalizedProvider, outcome, current.cacheTier)
+                                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        FlightEvents.endStage(event, operation, stage, normalizedProvider, outcome, current.cacheTier,
+                                current.paymentId);
+                    });
+        });
+    }
+
+    private Timer timer(String operation, String stage, String provider, String outcome, String cacheTier) {
+        String key = operation + '|' + stage + '|' + provider + '|' + outcome + '|' + cacheTier;
+        return timers.computeIfAbsent(key, k -> Timer.builder("payment.stage")
+                .description("Latency of one stage of a payment operation")
+                .tag("operation", operation)
+                .tag("stage", stage)
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .tag("cache_tier", cacheTier)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(maximumExpected)
+                .register(meterRegistry));
+    }
+
+    static String provider(String provider) {
+        if (provider == null) {
+            return NONE;
+        }
+        return switch (provider.toLowerCase(Locale.ROOT)) {
+            case "stripe" -> "stripe";
+            case "cashfree" -> "cashfree";
+            default -> "other";
+        };
+    }
+
+    private static String outcome(SignalType signal, Stage stage) {
+        return switch (signal) {
+            case ON_COMPLETE -> stage.emitted ? "success" : "empty";
+            case CANCEL -> "cancelled";
+            // Requests the service turned down, as opposed to failures of its own or downstream
+            default -> stage.error instanceof IllegalArgumentException || stage.error instanceof IllegalStateException
+                    ? "rejected" : "error";
+        };
+    }
+
+    /**
+     * One timed execution of a stage.
+     */
+    public static final class Stage {
+
+        private String cacheTier = NONE;
+        private boolean emitted;
+        private Throwable error;
+        private UUID paymentId;
+
+        public void cacheTier(String cacheTier) {
+            this.cacheTier = cacheTier;
+        }
+
+        public void paymentId(UUID paymentId) {
+            this.paymentId = paymentId;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.payment.dto.StatusView;
+import com.payment.profiling.FlightEvents;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReactiveStringCommands.SetCommand;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Status lookups served from a bounded in-process cache, then Redis, then the loader.
+ * Status changes are published on {@code status-updates:<namespace>} as {@code id:status},
+ * several joined by {@code ,} for a batch, so every node drops its local copy; the short local
+ * TTL bounds staleness if a message is missed.
+ */
+@Slf4j
+public class StatusCache implements AutoCloseable {
+
+    private static final Duration REDIS_TTL = Duration.ofHours(24);
+
+    private final String namespace;
+    private final String redisKeyPrefix;
+    private final String keyspace;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Cache<UUID, String> local;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private Disposable invalidations;
+
+    public StatusCache(String namespace,
+                       String redisKeyPrefix,
+                       ReactiveRedisTemplate<String, String> redisTemplate,
+                       MeterRegistry meterRegistry,
+                       long maximumSize,
+                       Duration localTtl) {
+        this.namespace = namespace;
+        this.redisKeyPrefix = redisKeyPrefix;
+        this.keyspace = namespace + "_status";
+        this.redisTemplate = redisTemplate;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        this.localHits = counter(meterRegistry, "local", "hit");
+        this.localMisses = counter(meterRegistry, "local", "miss");
+        this.redisHits = counter(meterRegistry, "redis", "hit");
+        this.redisMisses = counter(meterRegistry, "redis", "miss");
+    }
+
+    public String channel() {
+        return "status-updates:" + namespace;
+    }
+
+    public Mono<String> get(UUID id, Function<UUID, Mono<String>> loader) {
+        String cached = local.getIfPresent(id);
+        if (cached != null) {
+            localHits.increment();
+            return Mono.just(cached);
+        }
+        localMisses.increment();
+
+        return FlightEvents.redis("GET", keyspace, redisTemplate.opsForValue().get(redisKeyPrefix + id))
+                .doOnNext(status -> {
+                    redisHits.increment();
+                    local.put(id, status);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    redisMisses.increment();
+                    return loader.apply(id)
+                            .flatMap(status -> put(id, status).thenReturn(status));
+                }));
+    }
+
+    /**
+     * Resolves many statuses at once: local hits first, then a single MGET, then one
+     * {@code loader} call for whatever is left, which is written back to Redis in one
+     * pipelined batch. Unknown ids are absent from the result.
+     */
+    public Mono<Map<UUID, String>> getAll(Collection<UUID> ids, Function<UUID[], Flux<StatusView>> loader) {
+        return Mono.defer(() -> {
+            Map<UUID, String> result = new HashMap<>(ids.size() * 2);
+            List<UUID> missing = new ArrayList<>();
+            for (UUID id : new LinkedHashSet<>(ids)) {
+                String cached = local.getIfPresent(id);
+                if (cached != null) {
+                    result.put(id, cached);
+                } else {
+                    missing.add(id);
+                }
+            }
+            localHits.increment(result.size());
+            localMisses.increment(missing.size());
+            if (missing.isEmpty()) {
+                return Mono.just(result);
+            }
+
+            List<String> keys = new ArrayList<>(missing.size());
+            for (UUID id : missing) {
+                keys.add(redisKeyPrefix + id);
+            }
+
+            return FlightEvents.redis("MGET", keyspace, redisTemplate.opsForValue().multiGet(keys))
+                    .defaultIfEmpty(List.of())
+                    .flatMap(values -> {
+                        List<UUID> notInRedis = new ArrayList<>();
+                        for (int i = 0; i < missing.size(); i++) {
+                            String status = i < values.size() ? values.get(i) : null;
+                            if (status != null) {
+                                local.put(missing.get(i), status);
+                                result.put(missing.get(i), status);
+                            } else {
+                                notInRedis.add(missing.get(i));
+                            }
+                        }
+                        redisHits.increment(missing.size() - notInRedis.size());
+                        redisMisses.increment(notInRedis.size());
+                        if (notInRedis.isEmpty()) {
+                            return Mono.just(result);
+                        }
+
+                        return loader.apply(notInRedis.toArray(UUID[]::new))
+                                .collectList()
+                                .flatMap(loaded -> {
+                                    for (StatusView view : loaded) {
+                                        local.put(view.id(), view.status());
+                                        result.put(view.id(), view.status());
+                                    }
+                                    return putAllInRedis(loaded).thenReturn(result);
+                                });
+                    });
+        });
+    }
+
+    /**
+     * Caches a status no other node can have cached yet, e.g. for a newly created row.
+     */
+    public Mono<Void> put(UUID id, String status) {
+        local.put(id, status);
+        return FlightEvents.redis("SET", keyspace, redisTemplate.opsForValue()
+                        .set(redisKeyPrefix + id, status, REDIS_TTL))
+                .then();
+    }
+
+    /**
+     * Caches a changed status and tells the other nodes to drop their copy.
+     */
+    public Mono<Void> update(UUID id, String status) {
+        return put(id, status)
+                .then(FlightEvents.redis("PUBLISH", keyspace, redisTemplate.convertAndSend(channel(), id + ":" + status)))
+                .then();
+    }
+
+    /**
+     * Caches the changed statuses of a batch like {@link #update}, but with one pipelined
+     * write and one message for all of them.
+     */
+    public Mono<Void> updateAll(List<StatusView> statuses) {
+        if (statuses.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder message = new StringBuilder(statuses.size() * 48);
+        for (StatusView view : statuses) {
+            local.put(view.id(), view.status());
+            if (!message.isEmpty()) {
+                message.append(',');
+            }
+            message.append(view.id()).append(':').append(view.status());
+        }
+        return putAllInRedis(statuses)
+                .then(FlightEvents.redis("PUBLISH", keyspace, redisTemplate.convertAndSend(channel(), message.toString())))
+                .then();
+    }
+
+    public void evictLocal(UUID id) {
+        local.invalidate(id);
+    }
+
+    public void subscribeInvalidations(ReactiveRedisMessageListenerContainer container) {
+        this.invalidations = container.receive(ChannelTopic.of(channel()))
+                .doOnNext(message -> {
+                    for (String entry : message.getMessage().split(",")) {
+                        int separator = entry.indexOf(':');
+                        evictLocal(UUID.fromString(separator < 0 ? entry : entry.substring(0, separator)));
+                    }
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Status invalidation subscription for {} failed, retrying: {}",
+                                namespace, signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @Override
+    public void close() {
+        if (invalidations != null) {
+            invalidations.dispose();
+        }
+    }
+
+    private Mono<Void> putAllInRedis(List<StatusView> statuses) {
+        if (statuses.isEmpty()) {
+            return Mono.empty();
+        }
+        SerializationPair<String> keys = redisTemplate.getSerializationContext().getKeySerializationPair();
+        SerializationPair<String> values = redisTemplate.getSerializationContext().getValueSerializationPair();
+        Expiration expiration = Expiration.from(REDIS_TTL);
+        // All SETs go out on one connection without waiting for each reply
+        return redisTemplate.execute(connection -> connection.stringCommands().set(Flux.fromIterable(statuses)
+                        .map(view -> SetCommand.set(keys.write(redisKeyPrefix + view.id()))
+                                .value(values.write(view.status()))
+                                .expiring(expiration))))
+                .then();
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("payment.status.cache")
+                .description("Status cache lookups per tier")
+                .tag("cache", namespace)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,339 @@
+package com.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts provider webhooks and verifies the payments they refer to off the request path.
+ *
+ * <p>A webhook is acknowledged once its HMAC signature checks out and its provider event id
+ * has not been seen before. The event id is first held for {@code payment.webhooks.pending-ttl}
+ * and kept for {@code payment.webhooks.dedupe-ttl} only once its payment is verified, so an event
+ * lost from the in-memory queue by a crash is accepted again soon after. Verifications are queued
+ * on one of {@code payment.webhooks.partitions} workers chosen by provider order id, so the
+ * updates of one order apply in arrival order while different orders run in parallel. Each
+ * worker takes up to {@code batch-size} queued updates at a time, keeps the latest per order
+ * and applies them with {@link PaymentService#verifyPayments}. A full queue is reported as
+ * {@link Outcome#OVERLOADED} and the event id released, so the provider retries later.
+ *
+ * <p>The provider has its acknowledgement by the time a verification fails, so it will not
+ * send the event again. A failed order is queued again after {@code payment.webhooks.retry-backoff},
+ * doubling with each attempt; after {@code payment.webhooks.max-attempts}, or when it is still
+ * waiting at shutdown, its event id is released so a redelivery or manual replay is accepted.
+ */
+@Slf4j
+@Service
+public class WebhookIngestionService {
+
+    public enum Outcome {
+        ACCEPTED,
+        DUPLICATE,
+        IGNORED,
+        INVALID_SIGNATURE,
+        OVERLOADED
+    }
+
+    private static final String DEDUPE_KEY_PREFIX = "webhook:";
+    private static final Set<String> STRIPE_EVENT_TYPES = Set.of(
+            "checkout.session.completed",
+            "checkout.session.async_payment_succeeded",
+            "checkout.session.async_payment_failed",
+            "checkout.session.expired");
+    private static final Set<String> CASHFREE_EVENT_TYPES = Set.of(
+            "PAYMENT_SUCCESS_WEBHOOK",
+            "PAYMENT_FAILED_WEBHOOK",
+            "PAYMENT_USER_DROPPED_WEBHOOK");
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final PaymentService paymentService;
+    private final ObjectMapper objectMapper;
+    private final HmacSigner stripeSigner;
+    private final HmacSigner cashfreeSigner;
+    private final Duration pendingTtl;
+    private final Duration dedupeTtl;
+    private final Duration signatureTolerance;
+    private final Duration shutdownTimeout;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Set<Verification> retrying = ConcurrentHashMap.newKeySet();
+    private final List<Sinks.Many<Verification>> partitions;
+    private final CompletableFuture<Void> drained;
+
+    @Autowired
+    public WebhookIngestionService(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                                   PaymentService paymentService,
+                                   ObjectMapper objectMapper,
+                                   @Value("${payment.providers.stripe.webhook-secret}") String stripeWebhookSecret,
+                                   @Value("${payment.providers.cashfree.secret-key}") String cashfreeSecretKey,
+                                   @Value("${payment.webhooks.partitions:16}") int partitionCount,
+                                   @Value("${payment.webhooks.queue-capacity:1024}") int queueCapacity,
+                                   @Value("${payment.webhooks.batch-size:100}") int batchSize,
+                                   @Value("${payment.webhooks.batch-window:50ms}") Duration batchWindow,
+                                   @Value("${payment.webhooks.max-attempts:5}") int maxAttempts,
+                                   @Value("${payment.webhooks.retry-backoff:1s}") Duration retryBackoff,
+                                   @Value("${payment.webhooks.pending-ttl:5m}") Duration pendingTtl,
+                                   @Value("${payment.webhooks.dedupe-ttl:24h}") Duration dedupeTtl,
+                                   @Value("${payment.webhooks.signature-tolerance:5m}") Duration signatureTolerance,
+                                   @Value("${payment.webhooks.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        this.redisTemplate = redisTemplate;
+        this.paymentService = paymentService;
+        this.objectMapper = objectMapper;
+        this.stripeSigner = new HmacSigner(stripeWebhookSecret);
+        this.cashfreeSigner = new HmacSigner(cashfreeSecretKey);
+        this.pendingTtl = pendingTtl;
+        this.dedupeTtl = dedupeTtl;
+        this.signatureTolerance = signatureTolerance;
+        this.shutdownTimeout = shutdownTimeout;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+
+        this.partitions = new ArrayList<>(partitionCount);
+        List<Mono<Void>> workers = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            Sinks.Many<Verification> partition = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<Verification>get(queueCapacity).get());
+            partitions.add(partition);
+            workers.add(partition.asFlux()
+                    .bufferTimeout(batchSize, batchWindow, true)
+                    .concatMap(this::verifyBatch)
+                    .then());
+        }
+        this.drained = Mono.when(workers).toFuture();
+    }
+
+    /**
+     * Handles a Stripe event signed as {@code Stripe-Signature: t=<seconds>,v1=<hex hmac of "t.body">}.
+     */
+    public Mono<Outcome> ingestStripe(String signatureHeader, byte[] body) {
+        if (!stripeSignatureValid(signatureHeader, body)) {
+            return Mono.just(Outcome.INVALID_SIGNATURE);
+        }
+        return Mono.fromCallable(() -> objectMapper.readTree(body))
+                .flatMap(event -> {
+                    JsonNode session = event.path("data").path("object");
+                    String orderId = session.path("client_reference_id").asText(null);
+                    if (!STRIPE_EVENT_TYPES.contains(event.path("type").asText()) || orderId == null) {
+                        return Mono.just(Outcome.IGNORED);
+                    }
+                    String transactionId = session.path("payment_intent").asText(session.path("id").asText());
+                    return accept("stripe:" + event.path("id").asText(), orderId, transactionId);
+                });
+    }
+
+    /**
+     * Handles a Cashfree event signed as {@code x-webhook-signature: base64(hmac of timestamp + body)}.
+     * Cashfree sends no event id, so the payment id and event type identify a delivery.
+     */
+    public Mono<Outcome> ingestCashfree(String signature, String timestamp, byte[] body) {
+        if (!cashfreeSignatureValid(signature, timestamp, body)) {
+            return Mono.just(Outcome.INVALID_SIGNATURE);
+        }
+        return Mono.fromCallable(() -> objectMapper.readTree(body))
+                .flatMap(event -> {
+                    String type = event.path("type").asText();
+                    JsonNode data = event.path("data");
+                    String orderId = data.path("order").path("order_id").asText(null);
+                    String paymentId = data.path("payment").path("cf_payment_id").asText(null);
+                    if (!CASHFREE_EVENT_TYPES.contains(type) || orderId == null || paymentId == null) {
+                        return Mono.just(Outcome.IGNORED);
+                    }
+                    return accept("cashfree:" + paymentId + ":" + type, orderId, paymentId);
+                });
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Sinks.Many<Verification> partition : partitions) {
+            synchronized (partition) {
+                partition.tryEmitComplete();
+            }
+        }
+        try {
+            drained.get(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.error("Webhook verifications still queued at shutdown were not applied", e);
+        }
+        try {
+            Flux.fromIterable(retrying)
+                    .flatMap(this::release)
+                    .then()
+                    .block(shutdownTimeout);
+        } catch (RuntimeException e) {
+            log.error("Could not release the event ids of {} webhook verifications awaiting a retry", retrying.size(), e);
+        }
+    }
+
+    private Mono<Outcome> accept(String eventId, String providerOrderId, String transactionId) {
+        String dedupeKey = DEDUPE_KEY_PREFIX + eventId;
+        Verification verification = new Verification(providerOrderId, transactionId, dedupeKey, 1);
+        return redisTemplate.opsForValue().setIfAbsent(dedupeKey, verification.providerOrderId(), pendingTtl)
+                .flatMap(claimed -> {
+                    if (!Boolean.TRUE.equals(claimed)) {
+                        return Mono.just(Outcome.DUPLICATE);
+                    }
+                    if (enqueue(verification)) {
+                        return Mono.just(Outcome.ACCEPTED);
+                    }
+                    log.warn("Webhook queue full, rejecting event {} for order {}", eventId, verification.providerOrderId());
+                    return redisTemplate.opsForValue().delete(dedupeKey).thenReturn(Outcome.OVERLOADED);
+                });
+    }
+
+    private boolean enqueue(Verification verification) {
+        Sinks.Many<Verification> partition =
+                partitions.get(Math.floorMod(verification.providerOrderId().hashCode(), partitions.size()));
+        // A unicast sink accepts one emitter at a time
+        synchronized (partition) {
+            return partition.tryEmitNext(verification).isSuccess();
+        }
+    }
+
+    private Mono<Void> verifyBatch(List<Verification> batch) {
+        // Later webhooks for an order supersede earlier ones, the provider reports the final state anyway
+        Map<String, Verification> latest = new LinkedHashMap<>();
+        for (Verification verification : batch) {
+            latest.put(verification.providerOrderId(), verification);
+        }
+        Map<String, String> transactionIds = new LinkedHashMap<>();
+        latest.forEach((orderId, verification) -> transactionIds.put(orderId, verification.transactionId()));
+        return paymentService.verifyPayments(transactionIds)
+                .onErrorResume(error -> {
+                    log.error("Failed to apply {} webhook verifications", latest.size(), error);
+                    return Mono.just(latest.keySet());
+                })
+                .flatMap(unverified -> Flux.fromIterable(batch)
+                        .filter(verification -> !unverified.contains(verification.providerOrderId()))
+                        .flatMap(this::confirm)
+                        .thenMany(Flux.fromIterable(unverified))
+                        .flatMap(orderId -> retry(latest.get(orderId)))
+                        .then());
+    }
+
+    private Mono<Void> confirm(Verification verification) {
+        return redisTemplate.expire(verification.dedupeKey(), dedupeTtl)
+                .then()
+                .onErrorResume(error -> {
+                    // The event id lapses after pending-ttl instead, a redelivery then verifies again
+                    log.error("Failed to keep webhook event {}", verification.dedupeKey(), error);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> retry(Verification failed) {
+        if (failed.attempt() >= maxAttempts) {
+            log.atError()
+                    .addKeyValue("providerOrderId", failed.providerOrderId())
+                    .addKeyValue("attempts", failed.attempt())
+                    .log("Giving up on webhook verification, the event will be accepted again");
+            return release(failed);
+        }
+        Verification next = new Verification(failed.providerOrderId(), failed.transactionId(), failed.dedupeKey(),
+                failed.attempt() + 1);
+        Duration backoff = retryBackoff.multipliedBy(1L << (failed.attempt() - 1));
+        retrying.add(next);
+        // Waits off the worker, so the partition keeps draining meanwhile
+        Mono.delay(backoff)
+                .flatMap(tick -> retrying.remove(next) && !enqueue(next) ? release(next) : Mono.<Void>empty())
+                .subscribe();
+        // The event id stays pending for the whole wait, whatever the backoff has grown to
+        return redisTemplate.expire(next.dedupeKey(), pendingTtl.plus(backoff))
+                .then()
+                .onErrorResume(error -> {
+                    log.error("Failed to extend webhook event {}", next.dedupeKey(), error);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> release(Verification verification) {
+        return redisTemplate.opsForValue().delete(verification.dedupeKey())
+                .then()
+                .onErrorResume(error -> {
+                    log.error("Failed to release webhook event {}", verification.dedupeKey(), error);
+                    return Mono.empty();
+                });
+    }
+
+    private boolean stripeSignatureValid(String header, byte[] body) {
+        if (header == null) {
+            return false;
+        }
+        String timestamp = null;
+        List<String> signatures = new ArrayList<>(2);
+        for (String element : header.split(",")) {
+            int separator = element.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String name = element.substring(0, separator).trim();
+            if (name.equals("t")) {
+                timestamp = element.substring(separator + 1).trim();
+            } else if (name.equals("v1")) {
+                signatures.add(element.substring(separator + 1).trim());
+            }
+        }
+        if (timestamp == null || signatures.isEmpty() || !withinTolerance(timestamp, TimeUnit.SECONDS)) {
+            return false;
+        }
+        byte[] expected = stripeSigner.sign(timestamp.getBytes(StandardCharsets.US_ASCII), new byte[]{'.'}, body);
+        HexFormat hex = HexFormat.of();
+        for (String signature : signatures) {
+            try {
+                if (MessageDigest.isEqual(expected, hex.parseHex(signature))) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                // Not hex, try the next one
+            }
+        }
+        return false;
+    }
+
+    private boolean cashfreeSignatureValid(String signature, String timestamp, byte[] body) {
+        if (signature == null || timestamp == null || !withinTolerance(timestamp, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        try {
+            return cashfreeSigner.matches(Base64.getDecoder().decode(signature),
+                    timestamp.getBytes(StandardCharsets.US_ASCII), body);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean withinTolerance(String timestamp, TimeUnit unit) {
+        try {
+            long sentAt = unit.toMillis(Long.parseLong(timestamp));
+            return Math.abs(System.currentTimeMillis() - sentAt) <= signatureTolerance.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // attempt counts from 1; dedupeKey is kept once verified and released when given up
+    private record Verification(String providerOrderId, String transactionId, String dedupeKey, int attempt) {
+    }
+}
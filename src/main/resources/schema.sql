@@ -1,5 +1,31 @@
+-- Version 7 UUIDs start with the millisecond they were generated at, so new rows append to the
+-- right edge of the primary key index and an id tells which partition its row is in
+CREATE OR REPLACE FUNCTION uuid_generate_v7() RETURNS UUID AS $$
+    SELECT encode(set_bit(set_bit(overlay(uuid_send(gen_random_uuid())
+            PLACING substring(int8send((extract(epoch FROM clock_timestamp()) * 1000)::BIGINT) FROM 3)
+            FROM 1 FOR 6), 52, 1), 53, 1), 'hex')::UUID;
+$$ LANGUAGE sql VOLATILE;
+
+-- Creates the monthly partitions <parent>_YYYY_MM of parent for months months from the month of
+-- start_date, skipping those that exist. Also run by PartitionMaintenance to stay ahead of time.
+CREATE OR REPLACE FUNCTION create_monthly_partitions(parent TEXT, start_date DATE, months INT) RETURNS VOID AS $$
+DECLARE
+    month_start DATE;
+BEGIN
+    FOR i IN 0 .. months - 1 LOOP
+        month_start := (date_trunc('month', start_date) + make_interval(months => i))::DATE;
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L) WITH (fillfactor = 90)',
+                parent || '_' || to_char(month_start, 'YYYY_MM'), parent,
+                month_start, (month_start + INTERVAL '1 month')::DATE);
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitioned by month of created_at, so the indexes being written are those of the current
+-- month only and old months are detached and archived whole. Postgres can only enforce
+-- uniqueness that includes created_at, so foreign keys to payments and payouts are not declared.
 CREATE TABLE IF NOT EXISTS payments (
-    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    id UUID NOT NULL DEFAULT uuid_generate_v7(),
     job_id UUID NOT NULL,
     user_id UUID NOT NULL,
     labour_id UUID,
@@ -9,38 +35,75 @@ CREATE TABLE IF NOT EXISTS payments (
     payment_provider VARCHAR(20) NOT NULL,
     provider_order_id VARCHAR(255),
     status VARCHAR(20) NOT NULL DEFAULT 'CREATED',
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    metadata JSONB
-);
+    metadata JSONB,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
 
+-- Aggregated payouts have no single job or payment, their payments are in payout_items
 CREATE TABLE IF NOT EXISTS payouts (
-    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
-    job_id UUID NOT NULL,
-    payment_id UUID NOT NULL,
+    id UUID NOT NULL DEFAULT uuid_generate_v7(),
+    job_id UUID,
+    payment_id UUID,
     labour_id UUID NOT NULL,
     amount DECIMAL(10, 2) NOT NULL,
     commission DECIMAL(10, 2),
     settlement_status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
     bank_account_ref VARCHAR(255),
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    settlement_batch_id VARCHAR(64),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    FOREIGN KEY (payment_id) REFERENCES payments(id)
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+SELECT create_monthly_partitions('payments', CURRENT_DATE, 4);
+SELECT create_monthly_partitions('payouts', CURRENT_DATE, 4);
+
+-- The payments an aggregated payout pays, each payment can be paid out once
+CREATE TABLE IF NOT EXISTS payout_items (
+    payout_id UUID NOT NULL,
+    payment_id UUID NOT NULL,
+    amount DECIMAL(10, 2) NOT NULL,
+    commission DECIMAL(10, 2) NOT NULL,
+    PRIMARY KEY (payout_id, payment_id)
 );
 
+-- Rows are deleted by IdempotencyKeySweeper once expired, response_data is JSON written by CompactJson
 CREATE TABLE IF NOT EXISTS idempotency_keys (
     id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
     idempotency_key VARCHAR(255) NOT NULL UNIQUE,
     request_hash VARCHAR(255),
-    response_data JSONB,
+    response_data BYTEA,
     status VARCHAR(20) DEFAULT 'PENDING',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     expires_at TIMESTAMP
 );
 
-CREATE INDEX idx_payments_job_id ON payments(job_id);
-CREATE INDEX idx_payments_user_id ON payments(user_id);
-CREATE INDEX idx_payments_status ON payments(status);
-CREATE INDEX idx_payouts_labour_id ON payouts(labour_id);
+-- Events written in the same transaction as the state change they describe, drained by OutboxRelay
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGSERIAL PRIMARY KEY,
+    aggregate_id VARCHAR(64) NOT NULL,
+    topic VARCHAR(64) NOT NULL,
+    message_key VARCHAR(255),
+    event_type VARCHAR(64) NOT NULL,
+    content_type VARCHAR(64) NOT NULL,
+    payload BYTEA NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Indexes on payments and payouts are created on every partition. Nothing looks payments up by
+-- status alone, so status has no index of its own that every status change would rewrite.
+-- (created_at, id) completes the keys history pages seek on, see HistoryService
+CREATE INDEX idx_payments_job_id ON payments(job_id, created_at, id);
+CREATE INDEX idx_payments_user_id ON payments(user_id, created_at, id);
+CREATE INDEX idx_payments_labour_id ON payments(labour_id, created_at) WHERE status = 'SUCCESS';
+-- Provider order ids are unique per provider by construction, they only need to be found
+CREATE INDEX idx_payments_provider_order_id ON payments(provider_order_id);
+CREATE INDEX idx_payouts_labour_id ON payouts(labour_id, created_at, id);
 CREATE INDEX idx_payouts_payment_id ON payouts(payment_id);
-CREATE INDEX idx_idempotency_key ON idempotency_keys(idempotency_key);
+CREATE UNIQUE INDEX idx_payout_items_payment_id ON payout_items(payment_id);
+-- Only the payouts SettlementEngine still has to claim, so the index stays small
+CREATE INDEX idx_payouts_pending ON payouts(created_at) WHERE settlement_status = 'PENDING';
+-- The UNIQUE constraint already indexes idempotency_key
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
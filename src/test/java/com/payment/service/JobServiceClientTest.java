@@ -0,0 +1,190 @@
+package com.payment.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link JobServiceClient} against a local stub job service whose answers, status codes
+ * and latency each test scripts per request.
+ */
+class JobServiceClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile Responder responder;
+    private final WebClient webClient = WebClient.create();
+    private JobServiceClient client;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/jobs/", exchange -> {
+            try {
+                responder.respond(exchange, requests.incrementAndGet());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        // The first request through Netty pays for class loading and event loop startup, which
+        // can take longer than the timeouts below; pay it here so the tests time steady requests
+        responder = (exchange, request) -> respond(exchange, 200, "true");
+        webClient.get().uri(baseUrl() + "/jobs/warmup")
+                .retrieve()
+                .toBodilessEntity()
+                .block(Duration.ofSeconds(30));
+        requests.set(0);
+    }
+
+    @AfterEach
+    void stopStub() {
+        if (client != null) {
+            client.close();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void timeoutAnswersFalseAndIsNotCached() {
+        responder = (exchange, request) -> {
+            if (request == 1) {
+                Thread.sleep(5000);
+            }
+            respond(exchange, 200, "true");
+        };
+        client = client(Duration.ofSeconds(1), Duration.ZERO, 1, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        UUID jobId = UUID.randomUUID();
+
+        StepVerifier.create(client.validateJob(jobId))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(client.validateJob(jobId))
+                .expectNext(true)
+                .verifyComplete();
+        // A timeout is not retried, so the second answer came from a second request
+        Assertions.assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void circuitOpensAfterRepeatedFailures() {
+        responder = (exchange, request) -> respond(exchange, 500, "");
+        client = client(Duration.ofSeconds(5), Duration.ZERO, 0, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        // The breaker decides after its minimum of 10 calls
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(client.validateJob(UUID.randomUUID()))
+                    .expectNext(false)
+                    .verifyComplete();
+        }
+        StepVerifier.create(client.validateJob(UUID.randomUUID()))
+                .expectNext(false)
+                .verifyComplete();
+        Assertions.assertThat(requests.get()).isEqualTo(10);
+    }
+
+    @Test
+    void hedgedRequestWinsOverStalledOne() {
+        responder = (exchange, request) -> {
+            if (request == 1) {
+                Thread.sleep(5000);
+            }
+            respond(exchange, 200, "true");
+        };
+        client = client(Duration.ofSeconds(10), Duration.ofMillis(50), 0, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        Duration took = StepVerifier.create(client.validateJob(UUID.randomUUID()))
+                .expectNext(true)
+                .verifyComplete();
+        // Well under the stalled request's 5s, with room for a slow machine
+        Assertions.assertThat(took).isLessThan(Duration.ofSeconds(3));
+        Assertions.assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void trueAndFalseAnswersExpireSeparately() throws InterruptedException {
+        UUID validJob = UUID.randomUUID();
+        UUID invalidJob = UUID.randomUUID();
+        responder = (exchange, request) -> respond(exchange, 200,
+                String.valueOf(exchange.getRequestURI().getPath().contains(validJob.toString())));
+        client = client(Duration.ofSeconds(5), Duration.ZERO, 0, Duration.ofMinutes(5), Duration.ofSeconds(1));
+
+        StepVerifier.create(client.validateJob(validJob)).expectNext(true).verifyComplete();
+        StepVerifier.create(client.validateJob(invalidJob)).expectNext(false).verifyComplete();
+        StepVerifier.create(client.validateJob(validJob)).expectNext(true).verifyComplete();
+        StepVerifier.create(client.validateJob(invalidJob)).expectNext(false).verifyComplete();
+        Assertions.assertThat(requests.get()).isEqualTo(2);
+
+        Thread.sleep(1500);
+        responder = (exchange, request) -> respond(exchange, 200, "false");
+
+        // Only the false answer expired, the true one is still served from the cache
+        StepVerifier.create(client.validateJob(validJob)).expectNext(true).verifyComplete();
+        StepVerifier.create(client.validateJob(invalidJob)).expectNext(false).verifyComplete();
+        Assertions.assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void serverErrorsAreRetried() {
+        responder = (exchange, request) -> {
+            if (request == 1) {
+                respond(exchange, 503, "");
+            } else {
+                respond(exchange, 200, "true");
+            }
+        };
+        client = client(Duration.ofSeconds(5), Duration.ZERO, 1, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        StepVerifier.create(client.isJobComplete(UUID.randomUUID()))
+                .expectNext(true)
+                .verifyComplete();
+        Assertions.assertThat(requests.get()).isEqualTo(2);
+    }
+
+    private JobServiceClient client(Duration timeout, Duration hedgeDelay, int maxRetries, Duration trueTtl,
+                                    Duration falseTtl) {
+        return new JobServiceClient(webClient, new SimpleMeterRegistry(), baseUrl(),
+                timeout, hedgeDelay, maxRetries, 50f, Duration.ofMinutes(1),
+                1000, trueTtl, falseTtl, trueTtl, falseTtl,
+                false, 100, Duration.ofMillis(5));
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Responder {
+
+        void respond(HttpExchange exchange, int request) throws IOException, InterruptedException;
+    }
+}